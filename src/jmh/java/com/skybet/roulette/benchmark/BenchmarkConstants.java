@@ -0,0 +1,29 @@
+package com.skybet.roulette.benchmark;
+
+/**
+ * Bet counts and bets shared by the benchmarks
+ * @author benny
+ *
+ */
+final class BenchmarkConstants 
+{
+	/**
+	 * Bets placed by every thread in a round
+	 */
+	static final int BETS_PER_THREAD = 100000;
+	
+	/**
+	 * Bet IDs of a thread start at its index shifted by this, so threads never share IDs
+	 */
+	static final int THREAD_BET_ID_SHIFT = 24;
+	
+	static final String[] OUTSIDE_BETS = {"red", "dozen2", "odd", "column3"};
+	
+	/**
+	 * Straight, split, corner and six line
+	 */
+	static final int[][] INSIDE_BETS = {{17}, {8, 11}, {7, 8, 10, 11}, {4, 5, 6, 7, 8, 9}};
+	
+	private BenchmarkConstants(){
+	}
+}
@@ -0,0 +1,67 @@
+package com.skybet.roulette.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.skybet.roulette.Roulette;
+
+/**
+ * pay(betId) of every bet of a spun round, each thread paying its own bets.
+ * Every iteration is one round, placed and spun in the setup.
+ * @author benny
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = BenchmarkConstants.BETS_PER_THREAD)
+@Measurement(iterations = 20, batchSize = BenchmarkConstants.BETS_PER_THREAD)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayBenchmark 
+{
+	private Roulette roulette;
+	
+	@State(Scope.Thread)
+	public static class BetIds {
+		int nextBetId;
+		
+		@Setup(Level.Iteration)
+		public void setup(ThreadParams threadParams) {
+			nextBetId = threadParams.getThreadIndex() << BenchmarkConstants.THREAD_BET_ID_SHIFT;
+		}
+	}
+	
+	@Setup(Level.Iteration)
+	public void setup(IterationParams iterationParams, ThreadParams threadParams) throws Exception {
+		roulette = new Roulette();
+		for(int thread=0; thread<threadParams.getThreadCount(); thread++){
+			int firstBetId = thread << BenchmarkConstants.THREAD_BET_ID_SHIFT;
+			for(int i=0; i<iterationParams.getBatchSize(); i++){
+				if(i%2 == 0){
+					roulette.placeBet(firstBetId + i, BenchmarkConstants.OUTSIDE_BETS[i/2 & 3], 100);
+				} else{
+					roulette.placeBet(firstBetId + i, BenchmarkConstants.INSIDE_BETS[i/2 & 3], 100);
+				}
+			}
+		}
+		roulette.spin();
+	}
+	
+	@Benchmark
+	public long pay(BetIds betIds) throws Exception {
+		return roulette.pay(betIds.nextBetId++);
+	}
+}
@@ -0,0 +1,62 @@
+package com.skybet.roulette.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.skybet.roulette.Roulette;
+
+/**
+ * Both placeBet overloads on a shared table. The bet table only grows within a round, so every 
+ * iteration is one round: a fresh table taking a batch of bets from every thread.
+ * Run with -t to measure contention, -bs to change the bets per thread and round.
+ * @author benny
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = BenchmarkConstants.BETS_PER_THREAD)
+@Measurement(iterations = 20, batchSize = BenchmarkConstants.BETS_PER_THREAD)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlaceBetBenchmark 
+{
+	private Roulette roulette;
+	
+	@State(Scope.Thread)
+	public static class BetIds {
+		int nextBetId;
+		
+		@Setup(Level.Iteration)
+		public void setup(ThreadParams threadParams) {
+			nextBetId = threadParams.getThreadIndex() << BenchmarkConstants.THREAD_BET_ID_SHIFT;
+		}
+	}
+	
+	@Setup(Level.Iteration)
+	public void setup() {
+		roulette = new Roulette();
+	}
+	
+	@Benchmark
+	public boolean placeOutsideBet(BetIds betIds) throws Exception {
+		return roulette.placeBet(betIds.nextBetId++, "red", 100);
+	}
+	
+	@Benchmark
+	public boolean placeInsideBet(BetIds betIds) throws Exception {
+		int betId = betIds.nextBetId++;
+		return roulette.placeBet(betId, BenchmarkConstants.INSIDE_BETS[betId & 3], 100);
+	}
+}
@@ -0,0 +1,61 @@
+package com.skybet.roulette.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.skybet.roulette.RoundSettlement;
+import com.skybet.roulette.Roulette;
+
+/**
+ * Full round: spin and settleRound() of a table holding a mix of outside and inside bets.
+ * Bets are placed in the setup of every invocation, which is fine as a round takes milliseconds.
+ * @author benny
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SettleRoundBenchmark 
+{
+	@Param({"1000", "10000", "100000"})
+	public int noOfBets;
+	
+	private Roulette roulette;
+	
+	@Setup(Level.Trial)
+	public void setupTable() {
+		roulette = new Roulette();
+	}
+	
+	@Setup(Level.Invocation)
+	public void placeBets() throws Exception {
+		for(int betId=0; betId<noOfBets; betId++){
+			if(betId%2 == 0){
+				roulette.placeBet(betId, BenchmarkConstants.OUTSIDE_BETS[betId/2 & 3], 100);
+			} else{
+				roulette.placeBet(betId, BenchmarkConstants.INSIDE_BETS[betId/2 & 3], 100);
+			}
+		}
+	}
+	
+	@Benchmark
+	public RoundSettlement settleRound() {
+		roulette.spin();
+		return roulette.settleRound();
+	}
+}
@@ -0,0 +1,48 @@
+package com.skybet.roulette.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.skybet.roulette.RandomSource;
+import com.skybet.roulette.Roulette;
+
+/**
+ * spin() of a table without bets, for each local random source
+ * @author benny
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpinBenchmark 
+{
+	@Param({"random", "secureRandom"})
+	public String randomSource;
+	
+	private Roulette roulette;
+	
+	@Setup
+	public void setup() {
+		roulette = new Roulette();
+		roulette.setRandomSource("secureRandom".equals(randomSource) ? RandomSource.secureRandom() : RandomSource.random());
+	}
+	
+	@Benchmark
+	public int spin() {
+		return roulette.spin();
+	}
+}
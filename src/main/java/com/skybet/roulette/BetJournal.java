@@ -0,0 +1,546 @@
+package com.skybet.roulette;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append only journal of the bets, payments, spins and settlements of a Roulette, written into a
+ * memory mapped file. Records are small fixed size binary records, appended under a short lock.
+ * Durability is group committed: sync() flushes everything appended so far with a single force,
+ * threads waiting meanwhile are covered by the next force instead of flushing one by one.
+ * The file grows by mapping one more segment at a time. Records never cross a segment.
+ * Every record ends with a checksum: pages of a mapped file reach the disk in any order, so after
+ * a crash a record may be there in part only. Replay stops at the first record failing its checksum,
+ * and appends go on from there.
+ * Once a snapshot of the table covers every record, reset() empties the journal, and truncate() drops
+ * the records a snapshot covers while keeping the ones appended since. Positions go on from where 
+ * they were, so the position recorded in the snapshot tells which records came after it.
+ * @author benny
+ *
+ */
+public class BetJournal implements AutoCloseable
+{
+	public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+	/**
+	 * Receives the records of a journal in the order they were appended
+	 */
+	interface RecordHandler {
+		void bet(int betId, int playerId, int betKind, long coverage, long betAmount);
+		void pay(int betId);
+		void spin(int winningNumber);
+		void settle();
+	}
+
+	private static final int MAGIC = 0x524A4E4C;
+	private static final int VERSION = 5;
+	/**
+	 * magic, version, segment size, unused, position of the first record
+	 */
+	private static final int HEADER_SIZE = 24;
+	private static final int START_OFFSET = 16;
+
+	/**
+	 * Record types, written last so a record is only seen once complete. Free space is zero.
+	 */
+	private static final byte END = 0;
+	private static final byte BET = 1;
+	private static final byte PAY = 2;
+	private static final byte SPIN = 3;
+	private static final byte SETTLE = 4;
+
+	/**
+	 * CRC32C of the type and the fields, after the fields of every record
+	 */
+	private static final int CHECKSUM_SIZE = 4;
+	/**
+	 * type, betId, playerId, betKind, coverage, betAmount, checksum
+	 */
+	private static final int BET_SIZE = 1 + 4 + 4 + 1 + 8 + 8 + CHECKSUM_SIZE;
+	private static final int PAY_SIZE = 1 + 4 + CHECKSUM_SIZE;
+	private static final int SPIN_SIZE = 1 + 1 + CHECKSUM_SIZE;
+	private static final int SETTLE_SIZE = 1 + CHECKSUM_SIZE;
+	private static final int MAX_RECORD_SIZE = BET_SIZE;
+
+	private final File file;
+	/**
+	 * Replaced by truncate()
+	 */
+	private FileChannel channel;
+	private final int segmentSize;
+	/**
+	 * Mapped segments by index, null once forced and no longer written
+	 */
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	private MappedByteBuffer current;
+	private int currentSegment;
+	/**
+	 * Position in the file of the next record
+	 */
+	private long appendPosition;
+	/**
+	 * Position of the start of the file: positions go on across resets, the file starts over
+	 */
+	private long base;
+	private final CRC32C checksum = new CRC32C();
+
+	private final Object syncLock = new Object();
+	/**
+	 * Position up to which the records are on disk, counted as the positions returned by the appends
+	 */
+	private long durablePosition;
+	private boolean syncing;
+
+	/**
+	 * @param file journal file, created if missing
+	 * @throws IOException
+	 */
+	public BetJournal(File file) throws IOException {
+		this(file, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param file journal file, created if missing
+	 * @param segmentSize bytes mapped at a time for a new file, an existing file keeps its own
+	 * @throws IOException file is not a journal
+	 */
+	public BetJournal(File file, int segmentSize) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		if(channel.size() == 0){
+			if(segmentSize < HEADER_SIZE + MAX_RECORD_SIZE){
+				throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+			}
+			this.segmentSize = segmentSize;
+			current = map(0);
+			current.putInt(0, MAGIC);
+			current.putInt(4, VERSION);
+			current.putInt(8, segmentSize);
+			current.putLong(START_OFFSET, HEADER_SIZE);
+			appendPosition = HEADER_SIZE;
+			durablePosition = HEADER_SIZE;
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			channel.read(header, 0);
+			if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION){
+				throw new IOException("Not a bet journal: " + file);
+			}
+			this.segmentSize = header.getInt(8);
+			base = header.getLong(START_OFFSET) - HEADER_SIZE;
+			appendPosition = scan(null, 0, Long.MAX_VALUE);
+			current = map((int) (appendPosition / this.segmentSize));
+			discardTail();
+			durablePosition = base + appendPosition;
+		}
+	}
+
+	/**
+	 * Append a bet. Call sync() with the returned position before acknowledging it.
+	 * @return position after the record
+	 */
+	public synchronized long appendBet(int betId, int playerId, int betKind, long coverage, long betAmount) {
+		int offset = reserve(BET_SIZE);
+		current.putInt(offset + 1, betId);
+		current.putInt(offset + 5, playerId);
+		current.put(offset + 9, (byte) betKind);
+		current.putLong(offset + 10, coverage);
+		current.putLong(offset + 18, betAmount);
+		return commit(offset, BET, BET_SIZE);
+	}
+
+	/**
+	 * Append the payment of a bet of the spun round
+	 * @return position after the record
+	 */
+	public synchronized long appendPay(int betId) {
+		int offset = reserve(PAY_SIZE);
+		current.putInt(offset + 1, betId);
+		return commit(offset, PAY, PAY_SIZE);
+	}
+
+	/**
+	 * Append the winning number of the round taking bets
+	 * @return position after the record
+	 */
+	public synchronized long appendSpin(int winningNumber) {
+		int offset = reserve(SPIN_SIZE);
+		current.put(offset + 1, (byte) winningNumber);
+		return commit(offset, SPIN, SPIN_SIZE);
+	}
+
+	/**
+	 * Append the settlement of the spun round
+	 * @return position after the record
+	 */
+	public synchronized long appendSettle() {
+		int offset = reserve(SETTLE_SIZE);
+		return commit(offset, SETTLE, SETTLE_SIZE);
+	}
+
+	/**
+	 * Wait until everything up to the given position is on disk. One caller forces the file
+	 * for every record appended so far, the others wait for it.
+	 * @param position returned by an append
+	 */
+	public void sync(long position) {
+		long from;
+		boolean interrupted = false;
+		synchronized (syncLock) {
+			while(durablePosition < position && syncing){
+				try {
+					syncLock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+			if(durablePosition >= position)	return;
+			syncing = true;
+			from = durablePosition;
+		}
+		long to = from;
+		try {
+			List<MappedByteBuffer> toForce = new ArrayList<MappedByteBuffer>();
+			synchronized (this) {
+				to = base + appendPosition;
+				for(int segment=(int) ((from - base) / segmentSize); segment<=(int) ((appendPosition - 1) / segmentSize); segment++){
+					toForce.add(segments.get(segment));
+					if(segments.get(segment) != current){
+						segments.set(segment, null);
+					}
+				}
+			}
+			for(MappedByteBuffer segment : toForce){
+				segment.force();
+			}
+		} catch (RuntimeException e) {
+			to = from;
+			throw e;
+		} finally {
+			synchronized (syncLock) {
+				durablePosition = to;
+				syncing = false;
+				syncLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return position after the records appended so far, in bytes since the journal was created
+	 */
+	public synchronized long getPosition() {
+		return base + appendPosition;
+	}
+
+	/**
+	 * Read every record from the start of the journal
+	 * @param handler
+	 * @throws IOException corrupted record, or the journal was reset and only holds the records after a checkpoint
+	 */
+	void replay(RecordHandler handler) throws IOException {
+		replay(handler, 0);
+	}
+
+	/**
+	 * Read the records appended from the given position on, e.g. the records following a snapshot
+	 * @param handler
+	 * @param position returned by an append or getPosition(), 0 for every record
+	 * @throws IOException corrupted record, or records before the position were dropped by a reset
+	 */
+	synchronized void replay(RecordHandler handler, long position) throws IOException {
+		if(position < base + HEADER_SIZE && base != 0 && appendPosition > HEADER_SIZE){
+			throw new IOException("Journal starts at " + (base + HEADER_SIZE) + ", after position " + position);
+		}
+		scan(handler, position - base, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Drop every record, once a snapshot covers them, and give back the segments after the first one.
+	 * Positions go on from the current one. Nothing may be appended meanwhile.
+	 * @throws IOException
+	 */
+	public void reset() throws IOException {
+		reset(getPosition());
+	}
+
+	/**
+	 * Drop every record, the next one being appended at the given position. The records are zeroed
+	 * before the new start is written, so a crash in between leaves an empty journal ending before the
+	 * position, never old records read as new ones.
+	 * @param position not before the current position
+	 * @throws IOException
+	 */
+	void reset(long position) throws IOException {
+		boolean interrupted = false;
+		synchronized (syncLock) {
+			while(syncing){
+				try {
+					syncLock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			synchronized (this) {
+				if(position < base + appendPosition){
+					throw new IllegalArgumentException("Journal reset back from " + (base + appendPosition) + " to " + position);
+				}
+				segments.clear();
+				channel.truncate(segmentSize);
+				channel.force(true);
+				current = map(0);
+				zero(current, HEADER_SIZE, (int) Math.min(appendPosition, segmentSize));
+				current.force();
+				current.putLong(START_OFFSET, position);
+				current.force();
+				base = position - HEADER_SIZE;
+				appendPosition = HEADER_SIZE;
+				durablePosition = position;
+			}
+		}
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Drop the records before the position, once a snapshot covers them, and keep the records appended
+	 * since. These are copied into a new file replacing the journal once on disk, so a crash leaves
+	 * either journal whole. Appends only wait while the last of them are copied and forced.
+	 * The records kept start at the position, the ones after it may move by the padding at the end of 
+	 * a segment. Not to be called while another truncate() or reset() is running.
+	 * @param position returned by an append or getPosition(), e.g. the one of a snapshot
+	 * @throws IOException
+	 */
+	public void truncate(long position) throws IOException {
+		synchronized (this) {
+			if(position < base + HEADER_SIZE || position > base + appendPosition){
+				throw new IllegalArgumentException("Journal truncated at " + position + ", out of " 
+						+ (base + HEADER_SIZE) + " to " + (base + appendPosition));
+			}
+		}
+		File copyFile = new File(file.getPath() + ".tmp");
+		Files.deleteIfExists(copyFile.toPath());
+		BetJournal copy = new BetJournal(copyFile, segmentSize);
+		RecordHandler copier = copier(copy);
+		try {
+			copy.reset(position);
+			//most of the records appended since the position are copied while appends go on
+			long end = scan(copier, position - base, getPosition() - base);
+			boolean interrupted = false;
+			synchronized (syncLock) {
+				while(syncing){
+					try {
+						syncLock.wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				synchronized (this) {
+					scan(copier, end, appendPosition);
+					copy.close();
+					Files.move(copyFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, 
+							StandardCopyOption.REPLACE_EXISTING);
+					channel.close();
+					channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+					segments.clear();
+					base = copy.base;
+					appendPosition = copy.appendPosition;
+					current = map((int) (appendPosition / segmentSize));
+					durablePosition = base + appendPosition;
+				}
+			}
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		} finally {
+			if(copy.channel.isOpen()){
+				copy.channel.close();
+				Files.deleteIfExists(copyFile.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Force the journal to disk and close the file
+	 */
+	public void close() throws IOException {
+		sync(getPosition());
+		channel.close();
+	}
+
+	/**
+	 * @param handler receives the records, null to only find the end
+	 * @param from position in the file of the first record handed to the handler, 0 for the first one.
+	 * Records before it are not read.
+	 * @param to position in the file the records handed to the handler end at
+	 * @return position in the file after the last complete record up to the given end, the first record 
+	 * failing its checksum ends the journal
+	 */
+	private long scan(RecordHandler handler, long from, long to) throws IOException {
+		CRC32C checksum = new CRC32C();
+		long position = Math.max(from, HEADER_SIZE);
+		int noOfSegments = (int) ((channel.size() + segmentSize - 1) / segmentSize);
+		for(int segment=(int) (position / segmentSize); segment<noOfSegments; segment++){
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, (long) segment * segmentSize, segmentSize);
+			int offset = (int) (position - (long) segment * segmentSize);
+			while(offset <= segmentSize - MAX_RECORD_SIZE){
+				long recordPosition = (long) segment * segmentSize + offset;
+				if(recordPosition >= to)	return recordPosition;
+				byte type = buffer.get(offset);
+				if(type == END)	return recordPosition;
+				int recordSize = recordSize(type);
+				if(recordSize == 0){
+					throw new IOException("Corrupted journal record at " + recordPosition);
+				}
+				if(buffer.getInt(offset + recordSize - CHECKSUM_SIZE) != checksum(buffer, offset, type, recordSize, checksum)){
+					//torn by a crash
+					return recordPosition;
+				}
+				if(handler == null){
+					offset += recordSize;
+					continue;
+				}
+				switch (type) {
+				case BET:
+					handler.bet(buffer.getInt(offset + 1), buffer.getInt(offset + 5), buffer.get(offset + 9), 
+							buffer.getLong(offset + 10), buffer.getLong(offset + 18));
+					break;
+				case PAY:
+					handler.pay(buffer.getInt(offset + 1));
+					break;
+				case SPIN:
+					handler.spin(buffer.get(offset + 1));
+					break;
+				case SETTLE:
+					handler.settle();
+					break;
+				}
+				offset += recordSize;
+			}
+			position = (long) (segment + 1) * segmentSize;
+		}
+		return position;
+	}
+
+	/**
+	 * @return handler appending every record to the given journal
+	 */
+	private static RecordHandler copier(BetJournal journal) {
+		return new RecordHandler() {
+			public void bet(int betId, int playerId, int betKind, long coverage, long betAmount) {
+				journal.appendBet(betId, playerId, betKind, coverage, betAmount);
+			}
+			public void pay(int betId) {
+				journal.appendPay(betId);
+			}
+			public void spin(int winningNumber) {
+				journal.appendSpin(winningNumber);
+			}
+			public void settle() {
+				journal.appendSettle();
+			}
+		};
+	}
+
+	/**
+	 * @return size of the records of the type, 0 if not a record type
+	 */
+	private static int recordSize(byte type) {
+		switch (type) {
+		case BET:		return BET_SIZE;
+		case PAY:		return PAY_SIZE;
+		case SPIN:		return SPIN_SIZE;
+		case SETTLE:	return SETTLE_SIZE;
+		default:		return 0;
+		}
+	}
+
+	/**
+	 * Make room for a record, moving to the next segment if it does not fit into the current one
+	 * @return offset of the record in the current segment
+	 */
+	private int reserve(int recordSize) {
+		int offset = (int) (appendPosition % segmentSize);
+		if(offset > segmentSize - MAX_RECORD_SIZE){
+			appendPosition += segmentSize - offset;
+			offset = 0;
+		}
+		if(appendPosition / segmentSize != currentSegment){
+			//also when the last record ended right at the end of the segment
+			try {
+				current = map((int) (appendPosition / segmentSize));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return offset;
+	}
+
+	private long commit(int offset, byte type, int recordSize) {
+		int checksumOffset = offset + recordSize - CHECKSUM_SIZE;
+		current.putInt(checksumOffset, checksum(current, offset, type, recordSize, checksum));
+		current.put(offset, type);
+		appendPosition += recordSize;
+		return base + appendPosition;
+	}
+
+	/**
+	 * @return CRC32C of the type and the fields of the record at the offset
+	 */
+	private static int checksum(ByteBuffer buffer, int offset, byte type, int recordSize, CRC32C checksum) {
+		checksum.reset();
+		checksum.update(type);
+		ByteBuffer fields = buffer.duplicate();
+		fields.limit(offset + recordSize - CHECKSUM_SIZE).position(offset + 1);
+		checksum.update(fields);
+		return (int) checksum.getValue();
+	}
+
+	/**
+	 * Zero what follows the last valid record and drop the segments after it, so records torn
+	 * or left over from before a crash are not read again once new records are appended over them
+	 */
+	private void discardTail() throws IOException {
+		zero(current, (int) (appendPosition % segmentSize), segmentSize);
+		current.force();
+		long end = (appendPosition / segmentSize + 1) * segmentSize;
+		if(channel.size() > end){
+			channel.truncate(end);
+		}
+	}
+
+	/**
+	 * Zero the bytes of the segment from the offset up to the end
+	 */
+	private static void zero(MappedByteBuffer segment, int offset, int end) {
+		byte[] zeros = new byte[Math.min(end - offset, 1 << 16)];
+		ByteBuffer bytes = segment.duplicate();
+		bytes.position(offset);
+		while(bytes.position() < end){
+			bytes.put(zeros, 0, Math.min(zeros.length, end - bytes.position()));
+		}
+	}
+
+	private MappedByteBuffer map(int segment) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * segmentSize, segmentSize);
+		while(segments.size() <= segment){
+			segments.add(null);
+		}
+		segments.set(segment, buffer);
+		currentSegment = segment;
+		return buffer;
+	}
+}
@@ -0,0 +1,44 @@
+package com.skybet.roulette;
+
+/**
+ * Fixed size storage of the bet slots of a BetTable. A slot holds its state, the bet and
+ * the version of the slot, incremented every time a bet is stored in it.
+ * @author benny
+ *
+ */
+interface BetRecords
+{
+	int capacity();
+
+	byte getState(int slot);
+
+	void setState(int slot, byte state);
+
+	/**
+	 * Store a bet into the slot and increment its version
+	 */
+	void set(int slot, byte state, int betId, int playerId, int betKind, long coverage, long betAmount);
+
+	int getBetId(int slot);
+
+	int getPlayerId(int slot);
+
+	int getBetKind(int slot);
+
+	long getCoverage(int slot);
+
+	long getBetAmount(int slot);
+
+	int getVersion(int slot);
+
+	/**
+	 * Set every slot free at once
+	 */
+	void clear();
+
+	/**
+	 * @param capacity
+	 * @return new empty storage of the same kind
+	 */
+	BetRecords allocate(int capacity);
+}
@@ -0,0 +1,76 @@
+package com.skybet.roulette;
+
+/**
+ * Return of one unit placed on a bet, estimated over a number of spins
+ * @author benny
+ *
+ */
+public class BetStatistics 
+{
+	/**
+	 * z value of a 95% confidence interval
+	 */
+	public static final double Z_95 = 1.959964;
+	
+	private final String betName;
+	private final long noOfSpins;
+	private final double meanReturn;
+	private final double variance;
+	
+	public BetStatistics(String betName, long noOfSpins, double meanReturn, double variance){
+		this.betName = betName;
+		this.noOfSpins = noOfSpins;
+		this.meanReturn = meanReturn;
+		this.variance = variance;
+	}
+
+	public String getBetName() {
+		return betName;
+	}
+
+	public long getNoOfSpins() {
+		return noOfSpins;
+	}
+
+	/**
+	 * @return average sum of money returned per unit placed, including the stake (return to player)
+	 */
+	public double getMeanReturn() {
+		return meanReturn;
+	}
+	
+	/**
+	 * @return house edge, 1 - mean return
+	 */
+	public double getHouseEdge() {
+		return 1 - meanReturn;
+	}
+
+	/**
+	 * @return variance of the return of a single spin
+	 */
+	public double getVariance() {
+		return variance;
+	}
+	
+	/**
+	 * @param z z value of the confidence level, e.g. Z_95
+	 * @return half width of the confidence interval of the mean return
+	 */
+	public double getConfidenceHalfWidth(double z) {
+		return z * Math.sqrt(variance / noOfSpins);
+	}
+	
+	public double getConfidenceLow(double z) {
+		return meanReturn - getConfidenceHalfWidth(z);
+	}
+	
+	public double getConfidenceHigh(double z) {
+		return meanReturn + getConfidenceHalfWidth(z);
+	}
+	
+	public String toString() {
+		return String.format("%-10s return %.6f variance %.4f 95%% CI [%.6f, %.6f]", 
+				betName, meanReturn, variance, getConfidenceLow(Z_95), getConfidenceHigh(Z_95));
+	}
+}
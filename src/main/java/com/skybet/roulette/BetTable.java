@@ -0,0 +1,328 @@
+package com.skybet.roulette;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing bet table keyed by bet ID. Bets are stored in BetRecords, one slot per bet, 
+ * so no object is created per bet. Slots and the number index are reused between rounds.
+ * An off heap table keeps its slots in a direct buffer and has no number index, bets covering 
+ * a number are found by scanning the slots instead. Its heap footprint does not grow with the bets,
+ * and the direct memory of a round much bigger than the next is given back when clearing.
+ * Not thread safe, see StripedBetTable.
+ * @author benny
+ *
+ */
+class BetTable
+{
+	private static final byte FREE = 0;
+	private static final byte USED = 1;
+	private static final byte REMOVED = 2;
+	private static final int MIN_CAPACITY = 16;
+	private static final long[] EMPTY_INDEX = new long[0];
+	/**
+	 * An off heap table is shrunk when clearing once its capacity is this many times what the round needed
+	 */
+	private static final int SHRINK_FACTOR = 4;
+
+	private BetRecords records;
+	private final boolean indexed;
+	private int mask;
+	private int size;
+	private int removed;
+	/**
+	 * Bets of a player, settling a table without any only needs to visit the winning bets
+	 */
+	private int noOfPlayerBets;
+	private final int minCapacity;
+	/**
+	 * Most bets held since the last clear
+	 */
+	private int peakSize;
+
+	/**
+	 * Slots (and their version, to tell stale entries apart) of the bets covering each number. 
+	 * Entries of removed bets stay in here until the table is cleared or rehashed.
+	 */
+	private final long[][] numberIndex;
+	private final int[] numberIndexSize;
+
+	public BetTable(int noOfNumbers){
+		this(noOfNumbers, MIN_CAPACITY);
+	}
+
+	public BetTable(int noOfNumbers, int expectedSize){
+		this(noOfNumbers, expectedSize, false);
+	}
+
+	/**
+	 * @param noOfNumbers
+	 * @param expectedSize
+	 * @param offHeap keep the bets out of the heap
+	 */
+	public BetTable(int noOfNumbers, int expectedSize, boolean offHeap){
+		this.indexed = !offHeap;
+		this.numberIndex = new long[indexed ? noOfNumbers : 0][];
+		Arrays.fill(numberIndex, EMPTY_INDEX);
+		this.numberIndexSize = new int[noOfNumbers];
+		this.minCapacity = capacityFor(expectedSize);
+		allocate(offHeap ? new OffHeapBetRecords(minCapacity) : new HeapBetRecords(minCapacity));
+	}
+
+	private void allocate(BetRecords records) {
+		this.records = records;
+		mask = records.capacity() - 1;
+		size = 0;
+		removed = 0;
+		noOfPlayerBets = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return true if any bet of the table has a player
+	 */
+	public boolean hasPlayerBets() {
+		return noOfPlayerBets > 0;
+	}
+
+	/**
+	 * Add a bet of no player into the table
+	 * @return slot of the new bet, -1 if the bet ID is already taken
+	 */
+	public int put(int betId, int betKind, long coverage, long betAmount) {
+		return put(betId, Roulette.NO_PLAYER, betKind, coverage, betAmount);
+	}
+
+	/**
+	 * Add a bet into the table
+	 * @param betId
+	 * @param playerId
+	 * @param betKind
+	 * @param coverage
+	 * @param betAmount
+	 * @return slot of the new bet, -1 if the bet ID is already taken
+	 */
+	public int put(int betId, int playerId, int betKind, long coverage, long betAmount) {
+		int capacity = records.capacity();
+		if((size + removed + 1) * 2 > capacity){
+			rehash(size * 4 > capacity ? capacity * 2 : capacity);
+		}
+		int firstRemoved = -1;
+		int slot = hash(betId) & mask;
+		byte state;
+		while((state = records.getState(slot)) != FREE){
+			if(state == USED && records.getBetId(slot) == betId){
+				return -1;
+			}
+			if(state == REMOVED && firstRemoved < 0){
+				firstRemoved = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if(firstRemoved >= 0){
+			slot = firstRemoved;
+			removed--;
+		}
+		records.set(slot, USED, betId, playerId, betKind, coverage, betAmount);
+		size++;
+		if(playerId != Roulette.NO_PLAYER){
+			noOfPlayerBets++;
+		}
+		peakSize = Math.max(peakSize, size);
+		if(indexed){
+			indexSlot(slot);
+		}
+		return slot;
+	}
+
+	/**
+	 * @param betId
+	 * @return slot of the bet, -1 if not found
+	 */
+	public int find(int betId) {
+		int slot = hash(betId) & mask;
+		byte state;
+		while((state = records.getState(slot)) != FREE){
+			if(state == USED && records.getBetId(slot) == betId){
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Remove the bet in the given slot. The table is cleared once the last bet is removed.
+	 * @param slot
+	 */
+	public void remove(int slot) {
+		if(records.getPlayerId(slot) != Roulette.NO_PLAYER){
+			noOfPlayerBets--;
+		}
+		records.setState(slot, REMOVED);
+		size--;
+		removed++;
+		if(size == 0){
+			clear();
+		}
+	}
+
+	/**
+	 * Remove all bets at once, keeping the allocated slots for the next round. Off heap, slots are 
+	 * only kept up to SHRINK_FACTOR times what the round needed: after a round much bigger than usual 
+	 * the table starts over from a buffer fitting that round, so the direct memory kept between rounds 
+	 * is bounded by the last round, not by the biggest one ever.
+	 */
+	public void clear() {
+		int fittingCapacity = Math.max(minCapacity, capacityFor(peakSize));
+		if(!indexed && records.capacity() > fittingCapacity * SHRINK_FACTOR){
+			allocate(records.allocate(fittingCapacity));
+		} else {
+			records.clear();
+		}
+		Arrays.fill(numberIndexSize, 0);
+		size = 0;
+		removed = 0;
+		noOfPlayerBets = 0;
+		peakSize = 0;
+	}
+
+	/**
+	 * @return number of slots allocated
+	 */
+	int capacity() {
+		return records.capacity();
+	}
+
+	/**
+	 * Collect the slots of all bets covering the given number
+	 * @param number
+	 * @return slots of the bets covering the number
+	 */
+	public int[] findCovering(int number) {
+		if(!indexed){
+			return scanCovering(number);
+		}
+		long[] entries = numberIndex[number];
+		int[] slots = new int[numberIndexSize[number]];
+		int noOfSlots = 0;
+		for(int i=0; i<numberIndexSize[number]; i++){
+			int slot = (int) (entries[i] >>> 32);
+			if(records.getState(slot) == USED && records.getVersion(slot) == (int) entries[i]){
+				slots[noOfSlots++] = slot;
+			}
+		}
+		return noOfSlots == slots.length ? slots : Arrays.copyOf(slots, noOfSlots);
+	}
+
+	/**
+	 * Find the bets covering the number by going through all slots in order
+	 */
+	private int[] scanCovering(int number) {
+		long bit = 1L << number;
+		int[] slots = new int[Math.min(size, 64)];
+		int noOfSlots = 0;
+		for(int slot=0, capacity=records.capacity(); slot<capacity; slot++){
+			if(records.getState(slot) == USED && (records.getCoverage(slot) & bit) != 0){
+				if(noOfSlots == slots.length){
+					slots = Arrays.copyOf(slots, Math.max(8, noOfSlots * 2));
+				}
+				slots[noOfSlots++] = slot;
+			}
+		}
+		return noOfSlots == slots.length ? slots : Arrays.copyOf(slots, noOfSlots);
+	}
+
+	/**
+	 * @param from
+	 * @return first slot from the given one holding a bet, -1 if none
+	 */
+	public int nextSlot(int from) {
+		for(int slot=from, capacity=records.capacity(); slot<capacity; slot++){
+			if(records.getState(slot) == USED)	return slot;
+		}
+		return -1;
+	}
+
+	/**
+	 * Pass every bet of the table to the handler, in slot order
+	 * @param handler
+	 * @return number of bets
+	 */
+	public int forEach(TableSnapshot.BetHandler handler) {
+		int count = 0;
+		for(int slot=0, capacity=records.capacity(); slot<capacity; slot++){
+			if(records.getState(slot) == USED){
+				handler.bet(records.getBetId(slot), records.getPlayerId(slot), records.getBetKind(slot), 
+						records.getCoverage(slot), records.getBetAmount(slot));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getBetId(int slot) {
+		return records.getBetId(slot);
+	}
+
+	public int getPlayerId(int slot) {
+		return records.getPlayerId(slot);
+	}
+
+	public int getBetKind(int slot) {
+		return records.getBetKind(slot);
+	}
+
+	public long getCoverage(int slot) {
+		return records.getCoverage(slot);
+	}
+
+	public long getBetAmount(int slot) {
+		return records.getBetAmount(slot);
+	}
+
+	private void indexSlot(int slot) {
+		long entry = ((long) slot << 32) | (records.getVersion(slot) & 0xFFFFFFFFL);
+		for(long coverage = records.getCoverage(slot); coverage != 0; coverage &= coverage - 1){
+			int number = Long.numberOfTrailingZeros(coverage);
+			if(numberIndexSize[number] == numberIndex[number].length){
+				numberIndex[number] = Arrays.copyOf(numberIndex[number], Math.max(8, numberIndexSize[number] * 2));
+			}
+			numberIndex[number][numberIndexSize[number]++] = entry;
+		}
+	}
+
+	/**
+	 * Move all bets into new records, dropping removed slots and stale index entries
+	 * @param capacity
+	 */
+	private void rehash(int capacity) {
+		BetRecords oldRecords = records;
+		allocate(oldRecords.allocate(capacity));
+		Arrays.fill(numberIndexSize, 0);
+		for(int i=0; i<oldRecords.capacity(); i++){
+			if(oldRecords.getState(i) == USED){
+				put(oldRecords.getBetId(i), oldRecords.getPlayerId(i), oldRecords.getBetKind(i), oldRecords.getCoverage(i), 
+						oldRecords.getBetAmount(i));
+			}
+		}
+	}
+
+	/**
+	 * @return capacity keeping the table at most half full with the given number of bets
+	 */
+	private static int capacityFor(int size) {
+		return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 2 - 1) * 2);
+	}
+
+	private static int hash(int betId) {
+		int h = betId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
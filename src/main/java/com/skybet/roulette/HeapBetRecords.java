@@ -0,0 +1,83 @@
+package com.skybet.roulette;
+
+import java.util.Arrays;
+
+/**
+ * Bet slots in parallel primitive arrays (struct of arrays) on the heap
+ * @author benny
+ *
+ */
+class HeapBetRecords implements BetRecords
+{
+	private final byte[] states;
+	private final int[] betIds;
+	private final int[] playerIds;
+	private final int[] betKinds;
+	private final long[] coverages;
+	private final long[] betAmounts;
+	private final int[] versions;
+
+	public HeapBetRecords(int capacity){
+		states = new byte[capacity];
+		betIds = new int[capacity];
+		playerIds = new int[capacity];
+		betKinds = new int[capacity];
+		coverages = new long[capacity];
+		betAmounts = new long[capacity];
+		versions = new int[capacity];
+	}
+
+	public int capacity() {
+		return states.length;
+	}
+
+	public byte getState(int slot) {
+		return states[slot];
+	}
+
+	public void setState(int slot, byte state) {
+		states[slot] = state;
+	}
+
+	public void set(int slot, byte state, int betId, int playerId, int betKind, long coverage, long betAmount) {
+		states[slot] = state;
+		betIds[slot] = betId;
+		playerIds[slot] = playerId;
+		betKinds[slot] = betKind;
+		coverages[slot] = coverage;
+		betAmounts[slot] = betAmount;
+		versions[slot]++;
+	}
+
+	public int getBetId(int slot) {
+		return betIds[slot];
+	}
+
+	public int getPlayerId(int slot) {
+		return playerIds[slot];
+	}
+
+	public int getBetKind(int slot) {
+		return betKinds[slot];
+	}
+
+	public long getCoverage(int slot) {
+		return coverages[slot];
+	}
+
+	public long getBetAmount(int slot) {
+		return betAmounts[slot];
+	}
+
+	public int getVersion(int slot) {
+		return versions[slot];
+	}
+
+	public void clear() {
+		Arrays.fill(states, (byte) 0);
+	}
+
+	public BetRecords allocate(int capacity) {
+		return new HeapBetRecords(capacity);
+	}
+}
@@ -0,0 +1,22 @@
+package com.skybet.roulette;
+
+import java.util.Random;
+
+/**
+ * Random source backed by a java.util.Random, or any of its subclasses such as SecureRandom.
+ * Random.nextInt(bound) rejects the biased part of the range, so every number is equally likely.
+ * @author benny
+ *
+ */
+public class JdkRandomSource implements RandomSource 
+{
+	private final Random random;
+	
+	public JdkRandomSource(Random random){
+		this.random = random;
+	}
+
+	public int nextInt(int bound) {
+		return random.nextInt(bound);
+	}
+}
@@ -0,0 +1,131 @@
+package com.skybet.roulette;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram in nanoseconds. Buckets are log linear: every power of two is split
+ * into 16 buckets, so a recorded value is kept within about 6% of its real value.
+ * Recording can be done from any number of threads. Every bucket is a LongAdder, striped across the 
+ * threads once they contend on it, so threads recording the same few latencies do not serialise on a 
+ * single counter. The stripes are summed up when read.
+ * @author benny
+ *
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/**
+	 * Values from 2^MAX_EXPONENT nanoseconds (about 18 minutes) go into the last bucket
+	 */
+	private static final int MAX_EXPONENT = 40;
+	private static final int NO_OF_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final LongAdder[] counts = new LongAdder[NO_OF_BUCKETS];
+
+	public LatencyHistogram(){
+		for(int i=0; i<NO_OF_BUCKETS; i++){
+			counts[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @param nanos latency of one operation
+	 */
+	public void record(long nanos) {
+		counts[bucketOf(nanos)].increment();
+	}
+
+	/**
+	 * @return copy of the current counts, to compute percentiles from
+	 */
+	public long[] snapshot() {
+		long[] snapshot = new long[NO_OF_BUCKETS];
+		for(int i=0; i<NO_OF_BUCKETS; i++){
+			snapshot[i] = counts[i].sum();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return counts of a histogram with nothing recorded, to add the counts of others to
+	 */
+	public static long[] emptySnapshot() {
+		return new long[NO_OF_BUCKETS];
+	}
+
+	/**
+	 * Add the current counts to the given ones, e.g. to merge the histograms of several threads
+	 * @param snapshot counts taken with snapshot()
+	 */
+	public void addTo(long[] snapshot) {
+		for(int i=0; i<NO_OF_BUCKETS; i++){
+			snapshot[i] += counts[i].sum();
+		}
+	}
+
+	/**
+	 * @param snapshot counts taken with snapshot()
+	 * @return number of values recorded
+	 */
+	public static long count(long[] snapshot) {
+		long count = 0;
+		for(long bucketCount : snapshot){
+			count += bucketCount;
+		}
+		return count;
+	}
+
+	/**
+	 * @param snapshot counts taken with snapshot()
+	 * @param quantile between 0 and 1, e.g. 0.99
+	 * @return upper bound of the bucket holding the quantile, 0 if nothing recorded
+	 */
+	public static long valueAt(long[] snapshot, double quantile) {
+		long count = count(snapshot);
+		if(count == 0)	return 0;
+		long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = 0;
+		for(int i=0; i<snapshot.length; i++){
+			seen += snapshot[i];
+			if(seen >= rank){
+				return upperBoundOf(i);
+			}
+		}
+		return upperBoundOf(snapshot.length - 1);
+	}
+
+	/**
+	 * @param snapshot counts taken with snapshot()
+	 * @return upper bound of the highest bucket recorded, 0 if nothing recorded
+	 */
+	public static long max(long[] snapshot) {
+		for(int i=snapshot.length-1; i>=0; i--){
+			if(snapshot[i] > 0){
+				return upperBoundOf(i);
+			}
+		}
+		return 0;
+	}
+
+	static int bucketOf(long nanos) {
+		if(nanos < SUB_BUCKETS){
+			return (int) Math.max(0, nanos);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		if(exponent > MAX_EXPONENT){
+			return NO_OF_BUCKETS - 1;
+		}
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBoundOf(int bucket) {
+		if(bucket < SUB_BUCKETS){
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
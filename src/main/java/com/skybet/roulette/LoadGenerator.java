@@ -0,0 +1,322 @@
+package com.skybet.roulette;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Open loop load generator and soak harness for one or more Roulette tables. Bets are scheduled at
+ * a fixed rate whatever the tables do: every bet has its time, and a worker running late places
+ * the bets it is behind on straight away instead of waiting. Latency is taken from the scheduled
+ * time, so a stall is charged to every bet it held up, not only to the one that hit it.
+ * Bets are a mix of outside and inside bets of random types and amounts, tables are spun and
+ * settled at a fixed interval meanwhile.
+ * Every worker records into latency histograms of its own, merged for the reports, so the workers do
+ * not contend on the buckets of a shared histogram while measuring the contention of the tables.
+ * @author benny
+ *
+ */
+public class LoadGenerator
+{
+	/**
+	 * Waits shorter than this are spun, longer ones parked
+	 */
+	private static final long SPIN_WAIT_NANOS = 50000;
+
+	private final Roulette[] tables;
+	private final int[][] insideBets;
+	private int noOfThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+	private double insideBetRatio = 0.3;
+	private long spinIntervalNanos = 1000000000L;
+	private long reportIntervalNanos;
+	private Consumer<LoadReport> intervalListener;
+	private long seed = new SplittableRandom().nextLong();
+
+	public LoadGenerator(Roulette... tables){
+		if(tables.length == 0){
+			throw new IllegalArgumentException("No table to load");
+		}
+		this.tables = tables;
+		this.insideBets = buildInsideBets(tables[0].getNoOfNumbers());
+	}
+
+	/**
+	 * @param noOfThreads threads placing bets, the target rate is split between them
+	 */
+	public void setNoOfThreads(int noOfThreads) {
+		this.noOfThreads = noOfThreads;
+	}
+
+	/**
+	 * @param insideBetRatio share of inside bets, between 0 and 1
+	 */
+	public void setInsideBetRatio(double insideBetRatio) {
+		this.insideBetRatio = insideBetRatio;
+	}
+
+	/**
+	 * @param spinIntervalMillis time between the spins of every table, 0 for no spins
+	 */
+	public void setSpinInterval(long spinIntervalMillis) {
+		this.spinIntervalNanos = spinIntervalMillis * 1000000L;
+	}
+
+	/**
+	 * Report every interval of a run, e.g. to watch a soak test drift
+	 * @param reportIntervalMillis
+	 * @param intervalListener receives the report of each interval, from the thread calling run()
+	 */
+	public void setIntervalReports(long reportIntervalMillis, Consumer<LoadReport> intervalListener) {
+		this.reportIntervalNanos = reportIntervalMillis * 1000000L;
+		this.intervalListener = intervalListener;
+	}
+
+	/**
+	 * @param seed of the bet mix, the same seed places the same bets
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Place bets at the target rate for the given time. Every scheduled bet is placed, so a run
+	 * past saturation takes longer than its duration.
+	 * @param betsPerSecond target rate
+	 * @param durationMillis
+	 * @return report of the whole run
+	 * @throws InterruptedException
+	 */
+	public LoadReport run(double betsPerSecond, long durationMillis) throws InterruptedException {
+		long noOfBets = (long) (betsPerSecond * durationMillis / 1000);
+		double intervalNanos = 1e9 / betsPerSecond;
+		LongAdder placed = new LongAdder();
+		LongAdder refused = new LongAdder();
+		AtomicLong spins = new AtomicLong();
+		AtomicLong failedSpins = new AtomicLong();
+		long start = System.nanoTime() + 10000000L;
+		long end = start + durationMillis * 1000000L;
+
+		List<Worker> workers = new ArrayList<Worker>();
+		List<Thread> threads = new ArrayList<Thread>();
+		SplittableRandom seeds = new SplittableRandom(seed);
+		for(int i=0; i<noOfThreads; i++){
+			Worker worker = new Worker(i, noOfBets, start, intervalNanos, seeds.split(), placed, refused);
+			workers.add(worker);
+			threads.add(new Thread(worker, "load-" + i));
+		}
+		Thread spinner = new Thread(() -> spin(start, end, spins, failedSpins), "load-spinner");
+		spinner.setDaemon(true);
+		for(Thread thread : threads){
+			thread.start();
+		}
+		if(spinIntervalNanos > 0){
+			spinner.start();
+		}
+
+		long[] lastLatencies = merge(workers, worker -> worker.latencies);
+		long[] lastServiceTimes = merge(workers, worker -> worker.serviceTimes);
+		long lastBets = 0, lastRefused = 0, lastSpins = 0, lastFailedSpins = 0;
+		long lastReport = start;
+		for(Thread thread : threads){
+			while(thread.isAlive()){
+				thread.join(reportIntervalNanos > 0 ? Math.max(1, reportIntervalNanos / 4000000L) : 0);
+				long now = System.nanoTime();
+				if(reportIntervalNanos > 0 && now - lastReport >= reportIntervalNanos){
+					long[] currentLatencies = merge(workers, worker -> worker.latencies);
+					long[] currentServiceTimes = merge(workers, worker -> worker.serviceTimes);
+					long bets = placed.sum(), refusedBets = refused.sum();
+					long noOfSpins = spins.get(), noOfFailedSpins = failedSpins.get();
+					intervalListener.accept(new LoadReport(betsPerSecond, now - lastReport, bets - lastBets,
+							refusedBets - lastRefused, noOfSpins - lastSpins, noOfFailedSpins - lastFailedSpins,
+							subtract(currentLatencies, lastLatencies), subtract(currentServiceTimes, lastServiceTimes)));
+					lastLatencies = currentLatencies;
+					lastServiceTimes = currentServiceTimes;
+					lastBets = bets;
+					lastRefused = refusedBets;
+					lastSpins = noOfSpins;
+					lastFailedSpins = noOfFailedSpins;
+					lastReport = now;
+				}
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		spinner.interrupt();
+		spinner.join();
+		return new LoadReport(betsPerSecond, elapsed, placed.sum(), refused.sum(), spins.get(), failedSpins.get(),
+				merge(workers, worker -> worker.latencies), merge(workers, worker -> worker.serviceTimes));
+	}
+
+	/**
+	 * Spin and settle every table at each spin interval until the end of the run. A table failing to
+	 * spin or settle is counted and the run goes on, it is tried again at the next interval.
+	 */
+	private void spin(long start, long end, AtomicLong spins, AtomicLong failedSpins) {
+		for(long next = start + spinIntervalNanos; next < end; next += spinIntervalNanos){
+			if(!waitUntil(next))	return;
+			boolean failed = false;
+			for(Roulette table : tables){
+				try {
+					table.spin();
+					table.settleRound();
+				} catch (RuntimeException e) {
+					failedSpins.incrementAndGet();
+					failed = true;
+				}
+			}
+			if(!failed){
+				spins.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return counts of the given histogram of every worker added up
+	 */
+	private static long[] merge(List<Worker> workers, Function<Worker, LatencyHistogram> histogram) {
+		long[] snapshot = LatencyHistogram.emptySnapshot();
+		for(Worker worker : workers){
+			histogram.apply(worker).addTo(snapshot);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Places the bets i, i + noOfThreads, i + 2 * noOfThreads... of the schedule
+	 */
+	private class Worker implements Runnable {
+		private final int index;
+		private final long noOfBets;
+		private final long start;
+		private final double intervalNanos;
+		private final SplittableRandom random;
+		private final LatencyHistogram latencies = new LatencyHistogram();
+		private final LatencyHistogram serviceTimes = new LatencyHistogram();
+		private final LongAdder placed;
+		private final LongAdder refused;
+
+		Worker(int index, long noOfBets, long start, double intervalNanos, SplittableRandom random,
+				LongAdder placed, LongAdder refused){
+			this.index = index;
+			this.noOfBets = noOfBets;
+			this.start = start;
+			this.intervalNanos = intervalNanos;
+			this.random = random;
+			this.placed = placed;
+			this.refused = refused;
+		}
+
+		public void run() {
+			String[] outsideBetTypes = tables[0].getOutsideBetTypes();
+			for(long bet=index; bet<noOfBets; bet+=noOfThreads){
+				long scheduled = start + (long) (bet * intervalNanos);
+				if(!waitUntil(scheduled))	return;
+				Roulette table = tables[(int) (bet % tables.length)];
+				long betAmount = 100 * (1 + random.nextInt(100));
+				long actual = System.nanoTime();
+				boolean accepted;
+				try {
+					if(random.nextDouble() < insideBetRatio){
+						accepted = table.placeBet((int) bet, insideBets[random.nextInt(insideBets.length)], betAmount);
+					} else {
+						accepted = table.placeBet((int) bet, outsideBetTypes[random.nextInt(outsideBetTypes.length)],
+								betAmount);
+					}
+				} catch (Exception e) {
+					accepted = false;
+				}
+				long done = System.nanoTime();
+				latencies.record(done - scheduled);
+				serviceTimes.record(done - actual);
+				placed.increment();
+				if(!accepted){
+					refused.increment();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return false if interrupted
+	 */
+	private static boolean waitUntil(long time) {
+		long wait;
+		while((wait = time - System.nanoTime()) > 0){
+			if(wait > SPIN_WAIT_NANOS){
+				LockSupport.parkNanos(wait - SPIN_WAIT_NANOS);
+				if(Thread.interrupted())	return false;
+			} else {
+				Thread.onSpinWait();
+			}
+		}
+		return true;
+	}
+
+	private static long[] subtract(long[] counts, long[] previousCounts) {
+		long[] interval = new long[counts.length];
+		for(int i=0; i<counts.length; i++){
+			interval[i] = counts[i] - previousCounts[i];
+		}
+		return interval;
+	}
+
+	/**
+	 * Straight ups, splits, streets, corners and six lines of the grid
+	 */
+	private static int[][] buildInsideBets(int noOfNumbers) {
+		int maxGridNumber = Math.min(WheelLayout.GRID_SIZE, noOfNumbers - 1);
+		List<int[]> bets = new ArrayList<int[]>();
+		for(int number=0; number<noOfNumbers; number++){
+			bets.add(new int[]{number});
+		}
+		for(int number=1; number<=maxGridNumber; number++){
+			boolean lastInRow = number%3 == 0;
+			boolean firstInRow = number%3 == 1;
+			if(!lastInRow && number+1 <= maxGridNumber)
+				bets.add(new int[]{number, number+1});
+			if(number+3 <= maxGridNumber)
+				bets.add(new int[]{number, number+3});
+			if(firstInRow && number+2 <= maxGridNumber)
+				bets.add(new int[]{number, number+1, number+2});
+			if(!lastInRow && number+4 <= maxGridNumber)
+				bets.add(new int[]{number, number+1, number+3, number+4});
+			if(firstInRow && number+5 <= maxGridNumber)
+				bets.add(new int[]{number, number+1, number+2, number+3, number+4, number+5});
+		}
+		return bets.toArray(new int[bets.size()][]);
+	}
+
+	/**
+	 * Step through target rates to find the saturation point of a table, printing a report
+	 * every second and a summary for every rate.
+	 * @param args comma separated bets per second (e.g. 50000,100000,200000), seconds per rate (10 by default),
+	 * threads placing bets, spin interval in milliseconds (1000 by default)
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		if(args.length == 0){
+			System.err.println("Usage: LoadGenerator betsPerSecond[,betsPerSecond...] [seconds] [threads] [spinIntervalMillis]");
+			System.exit(1);
+		}
+		long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+		List<LoadReport> summaries = new ArrayList<LoadReport>();
+		for(String rate : args[0].split(",")){
+			LoadGenerator generator = new LoadGenerator(new Roulette());
+			if(args.length > 2)	generator.setNoOfThreads(Integer.parseInt(args[2]));
+			if(args.length > 3)	generator.setSpinInterval(Long.parseLong(args[3]));
+			generator.setIntervalReports(1000, report -> System.out.println("  " + report));
+			System.out.println("Rate " + rate + "/s for " + seconds + "s");
+			LoadReport summary = generator.run(Double.parseDouble(rate), seconds * 1000);
+			System.out.println(summary);
+			summaries.add(summary);
+		}
+		System.out.println("Summary");
+		for(LoadReport summary : summaries){
+			System.out.println(summary);
+		}
+	}
+}
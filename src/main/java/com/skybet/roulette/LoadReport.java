@@ -0,0 +1,125 @@
+package com.skybet.roulette;
+
+/**
+ * Throughput and latencies of a load generator run, or of one interval of it.
+ * Latency is measured from the time a bet was scheduled to be placed, so a stall also counts
+ * against the bets that should have been placed during it (corrected for coordinated omission).
+ * Service time is measured from the time the bet was actually placed, as a closed loop client would.
+ * Latencies are in nanoseconds.
+ * @author benny
+ *
+ */
+public class LoadReport
+{
+	private final double targetRate;
+	private final long elapsedNanos;
+	private final long noOfBets;
+	private final long noOfRefusedBets;
+	private final long noOfSpins;
+	private final long noOfFailedSpins;
+	private final long[] latencies;
+	private final long[] serviceTimes;
+
+	/**
+	 * @param targetRate bets per second scheduled
+	 * @param elapsedNanos
+	 * @param noOfBets bets placed, refused ones included
+	 * @param noOfRefusedBets bets refused, e.g. betting closed while spinning or over the table limit
+	 * @param noOfSpins spin intervals every table was spun and settled in
+	 * @param noOfFailedSpins spins or settlements of a table that threw
+	 * @param latencies LatencyHistogram counts from the scheduled time
+	 * @param serviceTimes LatencyHistogram counts from the actual time
+	 */
+	public LoadReport(double targetRate, long elapsedNanos, long noOfBets, long noOfRefusedBets, long noOfSpins,
+			long noOfFailedSpins, long[] latencies, long[] serviceTimes){
+		this.targetRate = targetRate;
+		this.elapsedNanos = elapsedNanos;
+		this.noOfBets = noOfBets;
+		this.noOfRefusedBets = noOfRefusedBets;
+		this.noOfSpins = noOfSpins;
+		this.noOfFailedSpins = noOfFailedSpins;
+		this.latencies = latencies;
+		this.serviceTimes = serviceTimes;
+	}
+
+	public double getTargetRate() {
+		return targetRate;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public long getNoOfBets() {
+		return noOfBets;
+	}
+
+	public long getNoOfRefusedBets() {
+		return noOfRefusedBets;
+	}
+
+	public long getNoOfSpins() {
+		return noOfSpins;
+	}
+
+	public long getNoOfFailedSpins() {
+		return noOfFailedSpins;
+	}
+
+	/**
+	 * @return LatencyHistogram counts of the latencies from the scheduled time
+	 */
+	public long[] getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * @return LatencyHistogram counts of the latencies from the actual time
+	 */
+	public long[] getServiceTimes() {
+		return serviceTimes;
+	}
+
+	/**
+	 * @return bets placed per second
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : noOfBets * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * @param quantile between 0 and 1, e.g. 0.99
+	 * @return latency from the scheduled time, corrected for coordinated omission
+	 */
+	public long getLatencyAt(double quantile) {
+		return LatencyHistogram.valueAt(latencies, quantile);
+	}
+
+	/**
+	 * @param quantile between 0 and 1, e.g. 0.99
+	 * @return latency from the actual time the bet was placed
+	 */
+	public long getServiceTimeAt(double quantile) {
+		return LatencyHistogram.valueAt(serviceTimes, quantile);
+	}
+
+	public long getMaxLatency() {
+		return LatencyHistogram.max(latencies);
+	}
+
+	/**
+	 * @return true if the throughput fell short of the target by more than 5%, i.e. past saturation
+	 */
+	public boolean isSaturated() {
+		return getThroughput() < targetRate * 0.95;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("target %.0f/s, achieved %.0f/s, %d bets (%d refused), %d spins (%d failed), "
+				+ "latency p50 %.1fus p99 %.1fus p99.9 %.1fus max %.1fus, service time p50 %.1fus p99 %.1fus%s",
+				targetRate, getThroughput(), noOfBets, noOfRefusedBets, noOfSpins, noOfFailedSpins,
+				getLatencyAt(0.5) / 1e3, getLatencyAt(0.99) / 1e3, getLatencyAt(0.999) / 1e3, getMaxLatency() / 1e3,
+				getServiceTimeAt(0.5) / 1e3, getServiceTimeAt(0.99) / 1e3, isSaturated() ? ", SATURATED" : "");
+	}
+}
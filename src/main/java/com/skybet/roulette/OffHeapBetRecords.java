@@ -0,0 +1,107 @@
+package com.skybet.roulette;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Bet slots as fixed width records in a direct buffer, out of the heap. However many bets are open,
+ * the heap only holds the buffer object, so the garbage collector has nothing to scan or copy.
+ * Record layout (32 bytes): state byte, bet kind byte, 2 bytes padding, bet ID int, version int,
+ * player ID int, coverage long, bet amount long.
+ * A buffer is only freed by its cleaner once unreachable, Java 11 has no way to free it on the spot:
+ * a rehash holds the old and the new buffer until then, see BetTable.clear() for the memory kept between rounds.
+ * @author benny
+ *
+ */
+class OffHeapBetRecords implements BetRecords
+{
+	static final int RECORD_SIZE = 32;
+	private static final int STATE = 0;
+	private static final int BET_KIND = 1;
+	private static final int BET_ID = 4;
+	private static final int VERSION = 8;
+	private static final int PLAYER_ID = 12;
+	private static final int COVERAGE = 16;
+	private static final int BET_AMOUNT = 24;
+	/**
+	 * Most slots of a buffer, the biggest power of two whose records fit in an int of bytes
+	 */
+	static final int MAX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / RECORD_SIZE);
+
+	private final ByteBuffer records;
+	private final int capacity;
+
+	/**
+	 * @param capacity
+	 * @throws IllegalStateException over MAX_CAPACITY slots, use more stripes
+	 */
+	public OffHeapBetRecords(int capacity){
+		if(capacity < 0 || capacity > MAX_CAPACITY){
+			throw new IllegalStateException("Off heap bet table of " + capacity + " slots over the maximum of " 
+					+ MAX_CAPACITY + " per stripe, use more stripes");
+		}
+		this.records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+		this.capacity = capacity;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public byte getState(int slot) {
+		return records.get(slot * RECORD_SIZE + STATE);
+	}
+
+	public void setState(int slot, byte state) {
+		records.put(slot * RECORD_SIZE + STATE, state);
+	}
+
+	public void set(int slot, byte state, int betId, int playerId, int betKind, long coverage, long betAmount) {
+		int offset = slot * RECORD_SIZE;
+		records.put(offset + STATE, state);
+		records.put(offset + BET_KIND, (byte) betKind);
+		records.putInt(offset + BET_ID, betId);
+		records.putInt(offset + VERSION, records.getInt(offset + VERSION) + 1);
+		records.putInt(offset + PLAYER_ID, playerId);
+		records.putLong(offset + COVERAGE, coverage);
+		records.putLong(offset + BET_AMOUNT, betAmount);
+	}
+
+	public int getBetId(int slot) {
+		return records.getInt(slot * RECORD_SIZE + BET_ID);
+	}
+
+	public int getPlayerId(int slot) {
+		return records.getInt(slot * RECORD_SIZE + PLAYER_ID);
+	}
+
+	public int getBetKind(int slot) {
+		return records.get(slot * RECORD_SIZE + BET_KIND);
+	}
+
+	public long getCoverage(int slot) {
+		return records.getLong(slot * RECORD_SIZE + COVERAGE);
+	}
+
+	public long getBetAmount(int slot) {
+		return records.getLong(slot * RECORD_SIZE + BET_AMOUNT);
+	}
+
+	public int getVersion(int slot) {
+		return records.getInt(slot * RECORD_SIZE + VERSION);
+	}
+
+	/**
+	 * Zero the whole buffer, which frees every slot in one sequential pass
+	 */
+	public void clear() {
+		int end = capacity * RECORD_SIZE;
+		for(int offset=0; offset<end; offset+=Long.BYTES){
+			records.putLong(offset, 0);
+		}
+	}
+
+	public BetRecords allocate(int capacity) {
+		return new OffHeapBetRecords(capacity);
+	}
+}
@@ -0,0 +1,100 @@
+package com.skybet.roulette;
+
+import java.util.Arrays;
+
+/**
+ * Stakes and payouts of a round summed up by player. Open addressing from player ID to a dense
+ * index, totals are kept in parallel arrays in the order players are first seen.
+ * Not thread safe.
+ * @author benny
+ *
+ */
+class PlayerTotals
+{
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * Dense index + 1 of the player in each hash slot, 0 when free
+	 */
+	private int[] slots = new int[MIN_CAPACITY];
+	private int[] playerIds = new int[MIN_CAPACITY];
+	private long[] stakes = new long[MIN_CAPACITY];
+	private long[] payouts = new long[MIN_CAPACITY];
+	private int size;
+
+	/**
+	 * Add a bet to the totals of its player
+	 * @param playerId
+	 * @param stake amount of the bet
+	 * @param payout paid out on the bet, 0 if lost
+	 */
+	public void add(int playerId, long stake, long payout) {
+		int index = indexOf(playerId);
+		stakes[index] += stake;
+		payouts[index] += payout;
+	}
+
+	/**
+	 * Add the totals of every player of the given totals
+	 * @param totals
+	 */
+	public void addAll(PlayerTotals totals) {
+		for(int index=0; index<totals.size; index++){
+			add(totals.playerIds[index], totals.stakes[index], totals.payouts[index]);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int[] getPlayerIds() {
+		return Arrays.copyOf(playerIds, size);
+	}
+
+	public long[] getStakes() {
+		return Arrays.copyOf(stakes, size);
+	}
+
+	public long[] getPayouts() {
+		return Arrays.copyOf(payouts, size);
+	}
+
+	private int indexOf(int playerId) {
+		int mask = slots.length - 1;
+		int slot = hash(playerId) & mask;
+		while(slots[slot] != 0){
+			int index = slots[slot] - 1;
+			if(playerIds[index] == playerId)	return index;
+			slot = (slot + 1) & mask;
+		}
+		if(size == playerIds.length){
+			playerIds = Arrays.copyOf(playerIds, size * 2);
+			stakes = Arrays.copyOf(stakes, size * 2);
+			payouts = Arrays.copyOf(payouts, size * 2);
+		}
+		playerIds[size] = playerId;
+		slots[slot] = ++size;
+		if(size * 2 > slots.length){
+			rehash(slots.length * 2);
+		}
+		return size - 1;
+	}
+
+	private void rehash(int capacity) {
+		slots = new int[capacity];
+		int mask = capacity - 1;
+		for(int index=0; index<size; index++){
+			int slot = hash(playerIds[index]) & mask;
+			while(slots[slot] != 0){
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = index + 1;
+		}
+	}
+
+	private static int hash(int playerId) {
+		int h = playerId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
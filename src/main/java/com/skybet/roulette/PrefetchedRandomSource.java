@@ -0,0 +1,135 @@
+package com.skybet.roulette;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a ring buffer of winning numbers drawn in advance from a slow or remote random source,
+ * refilled by a background thread, so drawing a number never waits for the source.
+ * When the buffer runs empty (source too slow or failing), numbers are drawn from the local
+ * fallback source instead and counted.
+ * The buffer is drawn for one wheel size only.
+ * @author benny
+ *
+ */
+public class PrefetchedRandomSource implements RandomSource, AutoCloseable
+{
+	private static final long RETRY_DELAY_MILLIS = 1000;
+
+	private final RandomSource source;
+	private final RandomSource fallback;
+	private final int noOfNumbers;
+	private final int batchSize;
+
+	private final int[] ring;
+	private int head;
+	private int size;
+
+	private final AtomicLong noOfFallbacks = new AtomicLong();
+	private final AtomicLong noOfSourceFailures = new AtomicLong();
+	private volatile boolean running = true;
+	private final Thread refillThread;
+
+	/**
+	 * @param source slow random source, e.g. TrngRandomSources.randomOrg()
+	 * @param fallback local source used while the buffer is empty, e.g. RandomSource.secureRandom()
+	 * @param noOfNumbers numbers on the wheel
+	 * @param capacity numbers kept in advance
+	 */
+	public PrefetchedRandomSource(RandomSource source, RandomSource fallback, int noOfNumbers, int capacity){
+		this.source = source;
+		this.fallback = fallback;
+		this.noOfNumbers = noOfNumbers;
+		this.ring = new int[capacity];
+		this.batchSize = Math.max(1, capacity / 4);
+		this.refillThread = new Thread(this::refill, "roulette-random-prefetch");
+		refillThread.setDaemon(true);
+		refillThread.start();
+	}
+
+	/**
+	 * @param bound must be the number of numbers of the buffer
+	 * @return next number drawn in advance, or drawn from the fallback source if none left
+	 */
+	public int nextInt(int bound) {
+		if(bound != noOfNumbers){
+			throw new IllegalArgumentException("Numbers drawn for a wheel of " + noOfNumbers + ", not " + bound);
+		}
+		synchronized (this) {
+			if(size > 0){
+				int number = ring[head];
+				head = (head + 1) % ring.length;
+				size--;
+				if(ring.length - size == batchSize){
+					notifyAll();
+				}
+				return number;
+			}
+		}
+		noOfFallbacks.incrementAndGet();
+		return fallback.nextInt(bound);
+	}
+
+	/**
+	 * @return numbers currently drawn in advance
+	 */
+	public synchronized int available() {
+		return size;
+	}
+
+	/**
+	 * @return numbers taken from the fallback source so far
+	 */
+	public long getNoOfFallbacks() {
+		return noOfFallbacks.get();
+	}
+
+	/**
+	 * @return failed draws from the source so far
+	 */
+	public long getNoOfSourceFailures() {
+		return noOfSourceFailures.get();
+	}
+
+	/**
+	 * Stop refilling the buffer
+	 */
+	public void close() {
+		running = false;
+		refillThread.interrupt();
+	}
+
+	/**
+	 * Draw a batch from the source without holding the lock, then wait until the buffer has room for it
+	 */
+	private void refill() {
+		int[] batch = new int[batchSize];
+		while(running){
+			try {
+				for(int i=0; i<batch.length; i++){
+					batch[i] = source.nextInt(noOfNumbers);
+				}
+			} catch (RuntimeException e) {
+				noOfSourceFailures.incrementAndGet();
+				try {
+					Thread.sleep(RETRY_DELAY_MILLIS);
+				} catch (InterruptedException ie) {
+					return;
+				}
+				continue;
+			}
+			synchronized (this) {
+				try {
+					while(running && ring.length - size < batch.length){
+						wait();
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				for(int number : batch){
+					ring[(head + size) % ring.length] = number;
+					size++;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.skybet.roulette;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * Source of the winning numbers of a Roulette. True random number generators are in TrngRandomSources.
+ * @author benny
+ *
+ */
+public interface RandomSource 
+{
+	/**
+	 * @param bound number of numbers on the wheel
+	 * @return uniformly distributed number between 0 (inclusive) and bound (exclusive)
+	 */
+	int nextInt(int bound);
+	
+	/**
+	 * @return pseudo random source backed by java.util.Random
+	 */
+	static RandomSource random() {
+		return new JdkRandomSource(new Random());
+	}
+	
+	/**
+	 * @return source backed by the default SecureRandom of the platform
+	 */
+	static RandomSource secureRandom() {
+		return new JdkRandomSource(new SecureRandom());
+	}
+}
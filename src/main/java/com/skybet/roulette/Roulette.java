@@ -1,266 +1,1150 @@
 package com.skybet.roulette;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Random;
 import java.util.List;
 
 public class Roulette 
 {
 	private int[] numbers;
+	private WheelLayout wheelLayout;
 	public static final int EUROPEAN_TOTAL = 37;
-	private List<String> outsideBetTypes = Arrays.asList("low", "high", "even", "odd", "red", "black", 
+	static final List<String> OUTSIDE_BET_TYPES = Arrays.asList("low", "high", "even", "odd", "red", "black", 
 			"dozen1", "dozen2", "dozen3", "column1", "column2", "column3", "basket");
+	/**
+	 * Outside bets of the wheel layout, OUTSIDE_BET_TYPES on the standard wheels of 37 pockets or more
+	 */
+	private List<String> outsideBetTypes;
+	static final int INSIDE_BET = -1;
+	/**
+	 * Player ID of bets placed without a player, not summed up by player when settling
+	 */
+	public static final int NO_PLAYER = 0;
+	/**
+	 * Names of inside bets by the amount of numbers covered
+	 */
+	static final String[] INSIDE_BET_NAMES = {
+			null, "straight", "split", "street", "corner", "five", "sixline"};
+	/**
+	 * Payout of one unit placed on an inside bet, stake included, by the amount of numbers covered
+	 */
+	private static final long[] INSIDE_BET_PAYOUTS = {
+			0, 36, 18, 12, 9, 7, 6};
+	/**
+	 * Bets coverage is stored as a bit mask, one bit per number
+	 */
+	public static final int MAX_TOTAL = Long.SIZE;
 	
-	private final Random rnd = new Random();
+	/**
+	 * Status of each bet of a batch, see placeBets()
+	 */
+	public static final byte BET_ACCEPTED = 0;
+	public static final byte BET_DUPLICATE = 1;
+	public static final byte BET_CLOSED = 2;
+	public static final byte BET_INVALID = 3;
+	public static final byte BET_OVER_LIMIT = 4;
+	
+	/**
+	 * Payout multiplier of each outside bet kind (index of outsideBetTypes) for each winning number
+	 */
+	private long[][] outsidePayouts;
 	
-	protected int currentNumber;
-	private boolean canPlaceBet = true;
-	HashMap<Integer, Bet> betTable = new HashMap<Integer, Bet>();
+	/**
+	 * Coverage mask of each outside bet kind
+	 */
+	private long[] outsideCoverage;
+	
+	/**
+	 * Coverage masks of all valid inside bets on this layout, sorted
+	 */
+	private long[] insideBetLayouts;
+	
+	private volatile RandomSource randomSource = RandomSource.random();
+	
+	protected volatile int currentNumber;
+	
+	/**
+	 * Bet tables are double buffered. betTable takes bets of the current round while 
+	 * spunBetTable still holds the bets of the previous round waiting to be paid.
+	 */
+	volatile StripedBetTable betTable;
+	volatile StripedBetTable spunBetTable;
+	private volatile long round = 1;
+	private volatile boolean spunRoundSettled = true;
+	private RouletteMetrics metrics;
+	private volatile long tableLimit = Long.MAX_VALUE;
+	private volatile BetJournal journal;
+	private volatile RouletteEvents events = new RouletteEvents();
+	private volatile SpinHistory spinHistory;
+	/**
+	 * Last round published as settled, settling a round again is not published
+	 */
+	private long publishedSettlementRound;
+	/**
+	 * Stakes and payouts of the player bets of the spun round paid one by one with pay(), 
+	 * added to the settlement of the round. Guarded by itself.
+	 */
+	private volatile PlayerTotals paidPlayerTotals = new PlayerTotals();
+	/**
+	 * Journal position of the restored snapshot, -1 if not restored from a snapshot
+	 */
+	private long snapshotJournalPosition = -1;
 	
 	/**
 	 * Default constructor to initiate an European roulette
 	 */
 	public Roulette(){
-		initRoulette(EUROPEAN_TOTAL);
+		initRoulette(WheelLayout.EUROPEAN, StripedBetTable.defaultNoOfStripes(), false);
 	}
 
+	/**
+	 * @param noOfNumbers 37 for an European, 38 for an American and 39 for a triple zero roulette, 
+	 * see WheelLayout.of()
+	 */
 	public Roulette(int noOfNumbers){
-		initRoulette(noOfNumbers);
-		
+		this(noOfNumbers, StripedBetTable.defaultNoOfStripes());
 	}
 	
-	private void initRoulette(int noOfNumbers) {
+	/**
+	 * @param noOfNumbers
+	 * @param noOfStripes number of independently locked parts of the bet table. 
+	 * More stripes let more threads place bets at the same time.
+	 */
+	public Roulette(int noOfNumbers, int noOfStripes){
+		initRoulette(WheelLayout.of(noOfNumbers), noOfStripes, false);
+	}
+	
+	public Roulette(WheelLayout wheelLayout){
+		initRoulette(wheelLayout, StripedBetTable.defaultNoOfStripes(), false);
+	}
+	
+	public Roulette(WheelLayout wheelLayout, int noOfStripes){
+		initRoulette(wheelLayout, noOfStripes, false);
+	}
+	
+	/**
+	 * @param wheelLayout
+	 * @param noOfStripes
+	 * @param offHeapBets keep the open bets in direct memory as fixed width records, for tables 
+	 * holding millions of bets. Heap size and GC pauses then do not grow with the bets, while
+	 * settling goes through every slot of the table instead of an index.
+	 */
+	public Roulette(WheelLayout wheelLayout, int noOfStripes, boolean offHeapBets){
+		initRoulette(wheelLayout, noOfStripes, offHeapBets);
+	}
+	
+	/**
+	 * Compile the wheel layout into the payout and coverage tables used by betting and settling
+	 */
+	private void initRoulette(WheelLayout wheelLayout, int noOfStripes, boolean offHeapBets) {
+		int noOfNumbers = wheelLayout.getNoOfPockets();
+		this.wheelLayout = wheelLayout;
+		this.outsideBetTypes = wheelLayout.getOutsideBetTypes();
 		this.numbers = new int[noOfNumbers];
 		for(int i=0; i<noOfNumbers; i++){
 			this.numbers[i] = i;
 		}
+		
+		this.outsidePayouts = new long[outsideBetTypes.size()][noOfNumbers];
+		this.outsideCoverage = new long[outsideBetTypes.size()];
+		for(int betKind=0; betKind<outsideBetTypes.size(); betKind++){
+			String betType = outsideBetTypes.get(betKind);
+			long coverage = wheelLayout.getOutsideBetCoverage(betType);
+			for(int number=0; number<noOfNumbers; number++){
+				if((coverage & (1L << number)) != 0){
+					outsidePayouts[betKind][number] = wheelLayout.getOutsideBetPayout(betType);
+				}
+			}
+			outsideCoverage[betKind] = coverage;
+		}
+		this.insideBetLayouts = buildInsideBetLayouts(wheelLayout);
+		String[] betNames = new String[outsideBetTypes.size() + INSIDE_BET_NAMES.length - 1];
+		outsideBetTypes.toArray(betNames);
+		System.arraycopy(INSIDE_BET_NAMES, 1, betNames, outsideBetTypes.size(), INSIDE_BET_NAMES.length - 1);
+		this.metrics = new RouletteMetrics(betNames, () -> betTable.size(), () -> spunBetTable.size());
+		this.spinHistory = new SpinHistory(noOfNumbers, SpinHistory.DEFAULT_CAPACITY);
+		this.betTable = new StripedBetTable(noOfNumbers, noOfStripes, metrics, offHeapBets);
+		this.spunBetTable = new StripedBetTable(noOfNumbers, noOfStripes, metrics, offHeapBets);
+		spunBetTable.close();
 	}
 
 	public int getNoOfNumbers(){
 		return numbers.length;
 	}
 	
-	public int spin() {
-		currentNumber = rnd.nextInt(getNoOfNumbers());
+	public WheelLayout getWheelLayout(){
+		return wheelLayout;
+	}
+	
+	/**
+	 * @return latencies, bet counters and gauges of this table
+	 */
+	public RouletteMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Close the current round if still open and draw the winning number. The bets of the round 
+	 * are then waiting to be paid, while the next round is opened straight away. 
+	 * The result is published to getEvents().spins().
+	 * @return winning number
+	 * @throws IllegalStateException the previous round is not settled yet
+	 */
+	public synchronized int spin() {
+		return spinTo(drawNumber());
+	}
+	
+	/**
+	 * Spin to a number drawn elsewhere: the coordinator of a sharded wheel draws it once for all shards
+	 * @param winningNumber
+	 * @return winning number
+	 * @throws IllegalStateException the previous round is not settled yet
+	 */
+	synchronized int spinTo(int winningNumber) {
+		if(!spunRoundSettled){
+			throw new IllegalStateException("Round " + (round - 1) + " is not settled yet");
+		}
+		long start = System.nanoTime();
+		spinRound(winningNumber);
+		metrics.recordLatency(RouletteMetrics.Operation.SPIN, start);
+		events.publishSpin(round - 1, currentNumber);
 		return currentNumber;
 	}
 	
+	/**
+	 * Close the current round, journal the winning number and open the next round
+	 * @param winningNumber
+	 */
+	private void spinRound(int winningNumber) {
+		StripedBetTable spinningTable = betTable;
+		spinningTable.close();
+		currentNumber = winningNumber;
+		spinningTable.setWinningNumber(currentNumber);
+		spinHistory.record(currentNumber);
+		BetJournal journal = this.journal;
+		if(journal != null){
+			journal.sync(journal.appendSpin(currentNumber));
+		}
+		
+		StripedBetTable nextTable = spunBetTable;
+		nextTable.clearLiabilities();
+		nextTable.reopen();
+		spunBetTable = spinningTable;
+		spunRoundSettled = spinningTable.isEmpty();
+		paidPlayerTotals = new PlayerTotals();
+		betTable = nextTable;
+		round++;
+	}
+	
+	/**
+	 * @return a random number on the wheel
+	 */
+	protected int drawNumber() {
+		return randomSource.nextInt(getNoOfNumbers());
+	}
+	
+	/**
+	 * Change where the winning numbers come from. java.util.Random by default.
+	 * @param randomSource
+	 */
+	public void setRandomSource(RandomSource randomSource) {
+		this.randomSource = randomSource;
+	}
+	
 	public int getCurrentNumber(){
 		return currentNumber;
 	}
+	
+	/**
+	 * No more bets for the current round
+	 */
+	public synchronized void closeBetting() {
+		betTable.close();
+	}
+	
+	/**
+	 * @return number of the round currently taking bets, starting from 1
+	 */
+	public long getRound() {
+		return round;
+	}
+	
+	/**
+	 * @param round round number
+	 * @return phase of the given round
+	 */
+	public synchronized RoundPhase getPhase(long round) {
+		if(round == this.round){
+			return betTable.isOpen() ? RoundPhase.OPEN : RoundPhase.CLOSED;
+		}
+		if(round == this.round - 1){
+			return spunRoundSettled ? RoundPhase.SETTLED : RoundPhase.SPUN;
+		}
+		if(round < this.round && round > 0){
+			return RoundPhase.SETTLED;
+		}
+		throw new IllegalArgumentException("Round " + round + " not started");
+	}
 
 	/**
 	 * Place a bet into bet table. Used for outside bets.
 	 * @param betId bet ID. Used as key to store the bet
 	 * @param betType Bet type. Case sensitive. For full list of possible value, call getOutsideBetTypes()
+	 * @param betAmount in minor units of the currency, e.g. pence
+	 * @return true if bet successfully placed, false if the amount is not positive, betting is closed 
+	 * or the table limit would be exceeded
+	 * @throws Exception Duplicated betId
+	 */
+	public boolean placeBet(int betId, String betType, long betAmount) throws Exception {
+		return placeBet(betId, NO_PLAYER, betType, betAmount);
+	}
+	
+	/**
+	 * Place an outside bet of a player, see placeBet(int, String, long)
+	 * @param betId
+	 * @param playerId player or account the bet is settled to, see RoundSettlement
+	 * @param betType
 	 * @param betAmount
-	 * @return true if bet successfully placed
 	 * @throws Exception Duplicated betId
 	 */
-	public  boolean placeBet(int betId, String betType, double betAmount) throws Exception {
-		if (!isOutsideBet(betType))		return  false;
-		if(!canPlaceBet) 	return false;
-		if(betTable.put(betId, new Bet(betType, betAmount)) != null){
-			throw new Exception();
-		}
-		return true;
+	public boolean placeBet(int betId, int playerId, String betType, long betAmount) throws Exception {
+		int betKind = getOutsideBetKind(betType);
+		if (betKind == INSIDE_BET)		return  false;
+		if(outsideCoverage[betKind] == 0)	return false;
+		return placeBet(betId, playerId, betKind, outsideCoverage[betKind], betAmount);
 	}
 	
 	/**
 	 * Place a bet into bet table. Used for inside bets.
 	 * @param betId bet ID. Used as key to store the bet
-	 * @param insideBets Integer array in ascending order
+	 * @param insideBets Numbers covered by a straight, split, street, corner, six line or basket
+	 * @param betAmount in minor units of the currency, e.g. pence
+	 * @return true if bet successfully placed, false if the numbers are not a valid inside bet, the amount is 
+	 * not positive, betting is closed or the table limit would be exceeded
+	 * @throws Exception thrown when duplicated betId
+	 */
+	public boolean placeBet(int betId, int[] insideBets, long betAmount) throws Exception {
+		return placeBet(betId, NO_PLAYER, insideBets, betAmount);
+	}
+	
+	/**
+	 * Place an inside bet of a player, see placeBet(int, int[], long)
+	 * @param betId
+	 * @param playerId player or account the bet is settled to, see RoundSettlement
+	 * @param insideBets
 	 * @param betAmount
-	 * @return true if bet successfully placed
 	 * @throws Exception thrown when duplicated betId
 	 */
-	public synchronized boolean placeBet(int betId, int[] insideBets, double betAmount) throws Exception {
-		if(!canPlaceBet) 	return false;
-		if(betTable.put(betId, new Bet(insideBets, betAmount)) != null){
-			throw new Exception();
+	public boolean placeBet(int betId, int playerId, int[] insideBets, long betAmount) throws Exception {
+		long coverage = getInsideBetCoverage(insideBets);
+		if(coverage == 0)	return false;
+		return placeBet(betId, playerId, INSIDE_BET, coverage, betAmount);
+	}
+	
+	private boolean placeBet(int betId, int playerId, int betKind, long coverage, long betAmount) throws Exception {
+		long start = System.nanoTime();
+		StripedBetTable bets = betTable;
+		BetJournal journal = this.journal;
+		long journalPosition = 0;
+		int stripe = bets.stripeOf(betId);
+		BetTable table = bets.lockStripe(stripe);
+		try {
+			//added under the stripe lock of the open table only: close() waits for the lock, so the table 
+			//cannot be spun, cleared and reopened for another round between adding the liability and the bet
+			if(!bets.isOpen() || !addLiability(bets, betKind, coverage, betAmount)){
+				metrics.recordLatency(RouletteMetrics.Operation.PLACE_BET, start);
+				return false;
+			}
+			int slot;
+			try {
+				slot = table.put(betId, playerId, betKind, coverage, betAmount);
+			} catch (IllegalStateException e) {
+				//stripe full
+				subtractLiability(bets, betKind, coverage, betAmount, coverage);
+				throw e;
+			}
+			if(slot < 0){
+				subtractLiability(bets, betKind, coverage, betAmount, coverage);
+				metrics.recordLatency(RouletteMetrics.Operation.PLACE_BET, start);
+				throw new Exception();
+			}
+			bets.added(1);
+			if(journal != null){
+				journalPosition = journal.appendBet(betId, playerId, betKind, coverage, betAmount);
+			}
+		} finally {
+			bets.unlockStripe(stripe);
 		}
+		if(journal != null){
+			journal.sync(journalPosition);
+		}
+		metrics.recordLatency(RouletteMetrics.Operation.PLACE_BET, start);
+		countBet(betKind, coverage);
 		return true;
 	}
 	
 	/**
-	 * Calculate the payout of the given bet then remove the bet from table
+	 * Place a batch of bets. The stripes of the bet table taking bets of the batch are locked once 
+	 * for the whole batch, and the journal is synced once for it. Bets are taken in the order of the batch. Refused bets get a status instead of an exception, 
+	 * so one bad bet does not stop the others.
+	 * @param betIds bet ID of each bet
+	 * @param betTypes outside bet type of each bet, null for an inside bet
+	 * @param insideBets numbers covered by each inside bet, not read for outside bets
+	 * @param betAmounts in minor units of the currency
+	 * @param statuses filled with the status of each bet: BET_ACCEPTED, BET_DUPLICATE, BET_CLOSED, 
+	 * BET_INVALID (including amounts not positive) or BET_OVER_LIMIT (including payouts overflowing 
+	 * and off heap stripes full)
+	 * @return number of bets accepted
+	 */
+	public int placeBets(int[] betIds, String[] betTypes, int[][] insideBets, long[] betAmounts, byte[] statuses) {
+		return placeBets(betIds, null, betTypes, insideBets, betAmounts, statuses);
+	}
+	
+	/**
+	 * Place a batch of bets of players, see placeBets(int[], String[], int[][], long[], byte[])
+	 * @param playerIds player of each bet, null for bets of no player
+	 * @return number of bets accepted
+	 */
+	public int placeBets(int[] betIds, int[] playerIds, String[] betTypes, int[][] insideBets, long[] betAmounts, 
+			byte[] statuses) {
+		int noOfBets = betIds.length;
+		int[] betKinds = new int[noOfBets];
+		long[] coverages = new long[noOfBets];
+		for(int i=0; i<noOfBets; i++){
+			betKinds[i] = betTypes[i] == null ? INSIDE_BET : getOutsideBetKind(betTypes[i]);
+			if(betTypes[i] != null){
+				coverages[i] = betKinds[i] == INSIDE_BET ? 0 : outsideCoverage[betKinds[i]];
+			} else {
+				coverages[i] = getInsideBetCoverage(insideBets[i]);
+			}
+			statuses[i] = coverages[i] == 0 ? BET_INVALID : BET_ACCEPTED;
+		}
+		return placeBets(noOfBets, betIds, playerIds, betKinds, coverages, betAmounts, statuses);
+	}
+	
+	/**
+	 * Place a batch of encoded bets, see placeBets(int[], String[], int[][], long[], byte[]).
+	 * Each bet is a betId int, a betType byte (index in getOutsideBetTypes(), or -1 for an inside bet 
+	 * followed by a count byte and the numbers as bytes) and a betAmount long.
+	 * @param bets read from position to limit
+	 * @param statuses filled with the status of each bet, must have room for every bet
+	 * @return number of bets accepted
+	 * @throws IllegalArgumentException the last bet is cut short
+	 */
+	public int placeBets(ByteBuffer bets, byte[] statuses) {
+		int noOfBets = 0;
+		int[] betIds = new int[statuses.length];
+		int[] betKinds = new int[statuses.length];
+		long[] coverages = new long[statuses.length];
+		long[] betAmounts = new long[statuses.length];
+		try {
+			while(bets.hasRemaining()){
+				betIds[noOfBets] = bets.getInt();
+				int betKind = bets.get();
+				if(betKind == INSIDE_BET){
+					int count = bets.get() & 0xFF;
+					long coverage = 0;
+					for(int i=0; i<count; i++){
+						int number = bets.get();
+						coverage |= number >= 0 && number < numbers.length ? 1L << number : -1L;
+					}
+					boolean valid = Long.bitCount(coverage) == count && Arrays.binarySearch(insideBetLayouts, coverage) >= 0;
+					coverages[noOfBets] = valid ? coverage : 0;
+				} else {
+					coverages[noOfBets] = betKind >= 0 && betKind < outsideCoverage.length ? outsideCoverage[betKind] : 0;
+				}
+				betKinds[noOfBets] = betKind;
+				betAmounts[noOfBets] = bets.getLong();
+				statuses[noOfBets] = coverages[noOfBets] == 0 ? BET_INVALID : BET_ACCEPTED;
+				noOfBets++;
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Bet " + noOfBets + " of the batch is cut short", e);
+		}
+		return placeBets(noOfBets, betIds, null, betKinds, coverages, betAmounts, statuses);
+	}
+	
+	/**
+	 * Place the bets not marked invalid yet. The stripes of the batch are locked together, in stripe order,
+	 * so the liabilities are added under the locks of the open table and in the order of the batch.
+	 * @param playerIds null for bets of no player
+	 */
+	private int placeBets(int noOfBets, int[] betIds, int[] playerIds, int[] betKinds, long[] coverages, 
+			long[] betAmounts, byte[] statuses) {
+		long start = System.nanoTime();
+		StripedBetTable bets = betTable;
+		BetJournal journal = this.journal;
+		long journalPosition = 0;
+		int[] stripes = new int[noOfBets];
+		BetTable[] tables = new BetTable[bets.getNoOfStripes()];
+		boolean[] touched = new boolean[bets.getNoOfStripes()];
+		for(int i=0; i<noOfBets; i++){
+			if(statuses[i] == BET_INVALID)	continue;
+			if(betAmounts[i] <= 0){
+				statuses[i] = BET_INVALID;
+				continue;
+			}
+			stripes[i] = bets.stripeOf(betIds[i]);
+			touched[stripes[i]] = true;
+		}
+		int noOfAccepted = 0;
+		int locked = 0;
+		try {
+			for(; locked<touched.length; locked++){
+				if(touched[locked]){
+					tables[locked] = bets.lockStripe(locked);
+				}
+			}
+			for(int i=0; i<noOfBets; i++){
+				if(statuses[i] != BET_ACCEPTED)	continue;
+				if(!bets.isOpen()){
+					statuses[i] = BET_CLOSED;
+					continue;
+				}
+				//under the stripe lock, see placeBet(int, int, int, long, long)
+				if(!addLiability(bets, betKinds[i], coverages[i], betAmounts[i])){
+					statuses[i] = BET_OVER_LIMIT;
+					continue;
+				}
+				int playerId = playerIds == null ? NO_PLAYER : playerIds[i];
+				if(!putBet(tables[stripes[i]], betIds[i], playerId, betKinds[i], coverages[i], betAmounts[i], statuses, i)){
+					subtractLiability(bets, betKinds[i], coverages[i], betAmounts[i], coverages[i]);
+					continue;
+				}
+				noOfAccepted++;
+				if(journal != null){
+					journalPosition = journal.appendBet(betIds[i], playerId, betKinds[i], coverages[i], betAmounts[i]);
+				}
+			}
+			bets.added(noOfAccepted);
+		} finally {
+			while(--locked >= 0){
+				if(touched[locked]){
+					bets.unlockStripe(locked);
+				}
+			}
+		}
+		if(journal != null && noOfAccepted > 0){
+			journal.sync(journalPosition);
+		}
+		for(int i=0; i<noOfBets; i++){
+			if(statuses[i] == BET_ACCEPTED){
+				countBet(betKinds[i], coverages[i]);
+			}
+		}
+		metrics.recordLatency(RouletteMetrics.Operation.PLACE_BETS, start);
+		return noOfAccepted;
+	}
+	
+	/**
+	 * Put a bet of a batch into its stripe
+	 * @return false with the status of the bet set, if its ID is taken or the stripe is full
+	 */
+	private static boolean putBet(BetTable table, int betId, int playerId, int betKind, long coverage, long betAmount, 
+			byte[] statuses, int i) {
+		try {
+			if(table.put(betId, playerId, betKind, coverage, betAmount) >= 0)	return true;
+			statuses[i] = BET_DUPLICATE;
+		} catch (IllegalStateException e) {
+			statuses[i] = BET_OVER_LIMIT;
+		}
+		return false;
+	}
+	
+	private void countBet(int betKind, long coverage) {
+		metrics.countBet(betKind == INSIDE_BET ? outsideBetTypes.size() + Long.bitCount(coverage) - 1 : betKind);
+	}
+	
+	/**
+	 * Calculate the payout of the given bet of the spun round then remove the bet from table.
+	 * The round is settled once all of its bets are paid. The bet still counts for its player
+	 * in the settlement of the round.
 	 * @param betId ID of the bet
-	 * @return payout total sum of money return from the table
+	 * @return payout total sum of money return from the table, in minor units
 	 * @throws Exception bet not found
 	 */
-	public synchronized double pay(int betId) throws Exception {
-		double payOut = 0;
-		
-		Bet bet = betTable.get(betId);
-		if(bet == null) {
-			throw new Exception();
+	public long pay(int betId) throws Exception {
+		long start = System.nanoTime();
+		StripedBetTable bets = spunBetTable;
+		BetJournal journal = this.journal;
+		long journalPosition = 0;
+		int stripe = bets.stripeOf(betId);
+		BetTable table = bets.lockStripe(stripe);
+		long payOut;
+		long epoch;
+		try {
+			int slot = bets.isOpen() ? -1 : table.find(betId);
+			if(slot < 0) {
+				throw new Exception();
+			}
+			epoch = bets.getEpoch();
+			payOut = getPayout(table, slot, bets.getWinningNumber());
+			int playerId = table.getPlayerId(slot);
+			if(playerId != NO_PLAYER){
+				PlayerTotals totals = paidPlayerTotals;
+				synchronized (totals) {
+					totals.add(playerId, table.getBetAmount(slot), payOut);
+				}
+			}
+			subtractLiability(bets, table.getBetKind(slot), table.getCoverage(slot), table.getBetAmount(slot), 
+					table.getCoverage(slot));
+			table.remove(slot);
+			bets.removed(1);
+			if(journal != null){
+				journalPosition = journal.appendPay(betId);
+			}
+		} finally {
+			bets.unlockStripe(stripe);
 		}
-		String betType = bet.getBetType();
-		if(betType == null){
-			payOut = getInsideBetPayout(betType, bet.getInsideBets());
-		} else{
-			payOut = getOutsideBetPayout(betType);
+		if(journal != null){
+			journal.sync(journalPosition);
 		}
-		
-		betTable.remove(betId);
-		return payOut * bet.getBetAmount();
+		metrics.recordLatency(RouletteMetrics.Operation.PAY, start);
+		if(bets.isEmpty()){
+			markPaid(bets, epoch);
+		}
+		return payOut;
 	}
-
-	private double getInsideBetPayout(String betType, int[] insideBets) {
-		if(Arrays.stream(insideBets).anyMatch(singleBet -> singleBet == currentNumber)){
-			return (numbers.length - 1) / insideBets.length;
+	
+	/**
+	 * Mark the spun round settled once pay() took its last bet, unless the table moved on to another round meanwhile
+	 * @param bets spun bet table the bet was paid from
+	 * @param epoch of the table when the bet was paid
+	 */
+	private synchronized void markPaid(StripedBetTable bets, long epoch) {
+		if(bets == spunBetTable && bets.getEpoch() == epoch && bets.isEmpty()){
+			spunRoundSettled = true;
 		}
-		return 0;
 	}
-
+	
 	/**
-	 * Check is the bet type an outside bet (Case sensitive)
-	 * @param betType bet type
-	 * @return True if it is an outside bet
+	 * Settle every bet of the spun round against its winning number, then clear the bet table.
+	 * The bets are visited in one pass, summing up the stakes and payouts of each player on the way,
+	 * with the player bets paid already by pay(). Where no bet has a player, only the winning bets
+	 * are visited, found through the number index.
+	 * Bets of the next round can be placed meanwhile. The first settlement of every round is published
+	 * to getEvents().settlements().
+	 * @return bet IDs and payouts of the winning bets, empty if the round is settled already
+	 * @throws IllegalStateException no round spun yet
 	 */
-	private boolean isOutsideBet(String betType) {
-		return outsideBetTypes.stream().anyMatch(bt -> betType.equals(bt));
+	public synchronized RoundSettlement settleRound() {
+		RoundSettlement settlement = settle();
+		if(settlement.getRound() > publishedSettlementRound){
+			publishedSettlementRound = settlement.getRound();
+			events.publishSettlement(settlement);
+		}
+		return settlement;
 	}
-
+	
+	private RoundSettlement settle() {
+		StripedBetTable bets = spunBetTable;
+		int winningNumber = bets.getWinningNumber();
+		if(winningNumber < 0){
+			throw new IllegalStateException("No round spun yet");
+		}
+		long start = System.nanoTime();
+		int[] betIds = new int[0];
+		long[] payouts = new long[0];
+		int noOfWinners = 0;
+		int noOfLosers = 0;
+		PlayerTotals playerTotals = new PlayerTotals();
+		for(int stripe=0; stripe<bets.getNoOfStripes(); stripe++){
+			BetTable table = bets.lockStripe(stripe);
+			try {
+				int size = table.size();
+				if(noOfWinners + size > betIds.length){
+					int length = Math.max(noOfWinners + size, betIds.length * 2);
+					betIds = Arrays.copyOf(betIds, length);
+					payouts = Arrays.copyOf(payouts, length);
+				}
+				if(table.hasPlayerBets()){
+					for(int slot=table.nextSlot(0); slot>=0; slot=table.nextSlot(slot + 1)){
+						long payout = (table.getCoverage(slot) & (1L << winningNumber)) == 0 ? 0 
+								: getPayout(table, slot, winningNumber);
+						int playerId = table.getPlayerId(slot);
+						if(playerId != NO_PLAYER){
+							playerTotals.add(playerId, table.getBetAmount(slot), payout);
+						}
+						if(payout > 0){
+							betIds[noOfWinners] = table.getBetId(slot);
+							payouts[noOfWinners] = payout;
+							noOfWinners++;
+						} else {
+							noOfLosers++;
+						}
+					}
+				} else {
+					int[] winningSlots = table.findCovering(winningNumber);
+					for(int slot : winningSlots){
+						betIds[noOfWinners] = table.getBetId(slot);
+						payouts[noOfWinners] = getPayout(table, slot, winningNumber);
+						noOfWinners++;
+					}
+					noOfLosers += size - winningSlots.length;
+				}
+				bets.removed(size);
+				table.clear();
+			} finally {
+				bets.unlockStripe(stripe);
+			}
+		}
+		spunRoundSettled = true;
+		//no bet of the round is left to pay
+		PlayerTotals paid = paidPlayerTotals;
+		paidPlayerTotals = new PlayerTotals();
+		synchronized (paid) {
+			playerTotals.addAll(paid);
+		}
+		BetJournal journal = this.journal;
+		if(journal != null){
+			journal.sync(journal.appendSettle());
+		}
+		metrics.recordLatency(RouletteMetrics.Operation.SETTLE_ROUND, start);
+		return new RoundSettlement(round - 1, winningNumber, Arrays.copyOf(betIds, noOfWinners), 
+				Arrays.copyOf(payouts, noOfWinners), noOfLosers, playerTotals.getPlayerIds(), 
+				playerTotals.getStakes(), playerTotals.getPayouts());
+	}
+	
 	/**
-	 * Calculate the payout of any given outside bet
-	 * @param betType
-	 * @return the payout of any given outside bet. Return 0 if not hit.
-	 */
-	private double getOutsideBetPayout(String betType){
-		switch (betType){
-		case "low":
-			if(currentNumber != 0 && currentNumber <= 18)
-				return 2;
-			break;
-		case "high":
-			if(currentNumber != 0 && currentNumber >= 19)
-				return 2;
-			break;
-		case "even":
-			if(currentNumber != 0 && currentNumber%2 == 0)
-				return 2;
-			break;
-		case "odd":
-			if(currentNumber != 0 && currentNumber%2 == 1)
-				return 2;
-			break;
-		case "red":
-			List<Integer> redNumbers = Arrays.asList(
-							    1, 3, 5, 7, 9, 12,
-								14, 16, 18, 19, 21, 23,
-								25, 27, 30, 32, 34, 36); 
-			if(redNumbers.stream().anyMatch(redNumber -> currentNumber == redNumber)){
-				return 2;
+	 * Add the payout of a bet to the liability of every number it covers
+	 * @return false if the bet amount is not positive, the payout overflows or the table limit would 
+	 * be exceeded on any number, nothing added then
+	 */
+	private boolean addLiability(StripedBetTable bets, int betKind, long coverage, long betAmount) {
+		if(betAmount <= 0)	return false;
+		long limit = tableLimit;
+		for(long remaining = coverage; remaining != 0; remaining &= remaining - 1){
+			int number = Long.numberOfTrailingZeros(remaining);
+			long payout;
+			try {
+				payout = Math.multiplyExact(getPayoutMultiplier(betKind, coverage, number), betAmount);
+			} catch (ArithmeticException e) {
+				subtractLiability(bets, betKind, coverage, betAmount, coverage & ~remaining);
+				return false;
 			}
-			break;
-		case "black":
-			List<Integer> blackNumbers = Arrays.asList(
-								  2, 4, 6, 8, 10, 11,
-								  13, 15, 17, 20, 22, 24,
-								  26, 28, 29, 31, 33, 35); 
-			if(blackNumbers.stream().anyMatch(blackNumber -> currentNumber == blackNumber)){
-				return 2;
+			if(!bets.addLiability(number, payout, limit)){
+				subtractLiability(bets, betKind, coverage, betAmount, coverage & ~remaining);
+				return false;
 			}
-			break;
-		case "dozen1":
-			if(currentNumber >= 1 && currentNumber <= 12)
-				return 3;
-			break;
-		case "dozen2":
-			if(currentNumber >= 13 && currentNumber <= 24)
-				return 3;
-			break;
-		case "dozen3":
-			if(currentNumber >= 25 && currentNumber <= 36)
-				return 3;
-			break;
-		case "column1":
-			if(currentNumber%3==1)
-				return 3;
-			break;
-		case "column2":
-			if(currentNumber%3==2)
-				return 3;
-			break;
-		case "column3":
-			if(currentNumber%3==0 && currentNumber!=0)
-				return 3;
-			break;
-		case "basket":
-			if(currentNumber >= 0 && currentNumber <= 3)
-				return 7;
-			break;
-		default: 
-			return 0;
-				
 		}
-		return 0;
+		return true;
 	}
 	
-
 	/**
-	 * Return all possible outside bet types. Possible values as follow:
-	 * low/high
-	 * even/odd
-	 * red/black
-	 * dozen1: 1~12, dozen2: 13~24, dozen3:25~36
-	 * column1/column2/column3 Vertical columns
-	 * basket: 0,1,2,3
-	 * @return all possible outside bet types
+	 * Take the payout of a bet off the liability of the given numbers
+	 * @param numbers mask of the numbers to take the payout off
 	 */
-	public String[] getOutsideBetTypes() {
-		return (String[]) outsideBetTypes.toArray();
+	private void subtractLiability(StripedBetTable bets, int betKind, long coverage, long betAmount, long numbers) {
+		for(; numbers != 0; numbers &= numbers - 1){
+			int number = Long.numberOfTrailingZeros(numbers);
+			bets.subtractLiability(number, getPayoutMultiplier(betKind, coverage, number) * betAmount);
+		}
 	}
-
-
+	
 	/**
-	 * A bet storing where is the bet(betType), and how much placed(betAmount); 
-	 * @author benny
-	 *
+	 * @return rolling window of the last winning numbers, with their counts and chi-square statistic
 	 */
-	class Bet{
-		private String betType;
-		private int[] insideBets;
-		private double betAmount;
-		
-		public Bet(String betType, double betAmount){
-			setBetType(betType); 
-			setBetAmount(betAmount);
+	public SpinHistory getSpinHistory() {
+		return spinHistory;
+	}
+	
+	/**
+	 * Replace the spin history, e.g. to monitor a longer window
+	 * @param spinHistory for the same number of numbers
+	 */
+	public void setSpinHistory(SpinHistory spinHistory) {
+		this.spinHistory = spinHistory;
+	}
+	
+	/**
+	 * @return streams of the spin results and round settlements of this table
+	 */
+	public RouletteEvents getEvents() {
+		return events;
+	}
+	
+	/**
+	 * Replace the event streams, e.g. to run subscribers on another executor or with bigger buffers.
+	 * Subscribers of the previous streams are not moved over.
+	 * @param events
+	 */
+	public void setEvents(RouletteEvents events) {
+		this.events = events;
+	}
+	
+	/**
+	 * Rebuild the bets and the last winning number from the journal, then write every accepted bet, 
+	 * payment, spin and settlement into it. Bets, payments and spins are only acknowledged once on disk.
+	 * Call on a new table, before taking bets and before setting a table limit, or right after 
+	 * restoreSnapshot(): only the records journaled after the snapshot are replayed then.
+	 * @param journal
+	 * @throws IOException corrupted journal, or reset at a later checkpoint than the restored snapshot
+	 */
+	public synchronized void attachJournal(BetJournal journal) throws IOException {
+		if(this.journal != null || (round != 1 || !betTable.isEmpty()) && snapshotJournalPosition < 0){
+			throw new IllegalStateException("Journal can only be attached to a new or restored table");
 		}
-
-		public Bet(int[] insideBets, double betAmount){
-			setInsideBets(insideBets);
-			setBetAmount(betAmount);
+		long position = Math.max(snapshotJournalPosition, 0);
+		if(journal.getPosition() < position){
+			//emptied at the checkpoint of the snapshot by a reset cut short by a crash
+			journal.reset(position);
 		}
-		
-		public String getBetType() {
-			return betType;
+		journal.replay(new BetJournal.RecordHandler() {
+			public void bet(int betId, int playerId, int betKind, long coverage, long betAmount) {
+				try {
+					placeBet(betId, playerId, betKind, coverage, betAmount);
+				} catch (Exception e) {
+					throw new IllegalStateException("Bet " + betId + " journaled twice", e);
+				}
+			}
+			public void pay(int betId) {
+				try {
+					Roulette.this.pay(betId);
+				} catch (Exception e) {
+					throw new IllegalStateException("Bet " + betId + " paid but not found", e);
+				}
+			}
+			public void spin(int winningNumber) {
+				spinRound(winningNumber);
+			}
+			public void settle() {
+				publishedSettlementRound = Roulette.this.settle().getRound();
+			}
+		}, position);
+		this.journal = journal;
+	}
+	
+	/**
+	 * Write a point in time snapshot of the table: round, last winning number, table limit, 
+	 * the bets of the round taking bets and the unpaid bets of the spun round, and the spin history.
+	 * Bets can be placed meanwhile, each of them is either in the snapshot or not. Payments wait while the 
+	 * unpaid bets are copied. With a journal attached bets wait as well, and the snapshot records the
+	 * journal position it covers exactly.
+	 * The random source is not part of it, a restored table keeps drawing from its own.
+	 * @param file replaced atomically once the snapshot is on disk
+	 * @throws IOException
+	 */
+	public synchronized void writeSnapshot(File file) throws IOException {
+		long start = System.nanoTime();
+		BetJournal journal = this.journal;
+		TableSnapshot snapshot;
+		if(journal == null){
+			snapshot = createSnapshot(0);
+		} else {
+			lockBetTables();
+			try {
+				snapshot = createSnapshot(journal.getPosition());
+			} finally {
+				unlockBetTables();
+			}
 		}
+		snapshot.write(file);
+		metrics.recordLatency(RouletteMetrics.Operation.SNAPSHOT, start);
+	}
 
-		public void setBetType(String betType) {
-			this.betType = betType;
+	/**
+	 * Write a snapshot, then drop the records of the journal the snapshot covers, so it does not grow 
+	 * forever and a failover restores the snapshot and replays only what was journaled since. 
+	 * Bets and payments only wait while the snapshot is taken in memory, not while it is written.
+	 * @param file replaced atomically once the snapshot is on disk
+	 * @throws IOException
+	 */
+	public synchronized void checkpoint(File file) throws IOException {
+		BetJournal journal = this.journal;
+		if(journal == null){
+			throw new IllegalStateException("No journal to checkpoint");
+		}
+		long start = System.nanoTime();
+		long position;
+		TableSnapshot snapshot;
+		lockBetTables();
+		try {
+			position = journal.getPosition();
+			snapshot = createSnapshot(position);
+		} finally {
+			unlockBetTables();
 		}
+		snapshot.write(file);
+		journal.truncate(position);
+		metrics.recordLatency(RouletteMetrics.Operation.SNAPSHOT, start);
+	}
 
-		public double getBetAmount() {
-			return betAmount;
+	/**
+	 * @param journalPosition position of the journal covered by the snapshot, 0 without a journal
+	 */
+	private TableSnapshot createSnapshot(long journalPosition) {
+		TableSnapshot snapshot = TableSnapshot.create(getNoOfNumbers());
+		StripedBetTable bets = betTable;
+		StripedBetTable spunBets = spunBetTable;
+		snapshot.putLong(journalPosition);
+		snapshot.putLong(round);
+		snapshot.putInt(currentNumber);
+		snapshot.putInt(spunBets.getWinningNumber());
+		snapshot.putBoolean(bets.isOpen());
+		snapshot.putLong(tableLimit);
+		snapshot.putLong(publishedSettlementRound);
+		snapshot.putBets(bets);
+		//payments wait, so a bet paid meanwhile is in the unpaid bets or in the paid player totals, never both
+		spunBets.lockAll();
+		try {
+			snapshot.putBets(spunBets);
+			PlayerTotals paid = paidPlayerTotals;
+			synchronized (paid) {
+				snapshot.putPlayerTotals(paid);
+			}
+		} finally {
+			spunBets.unlockAll();
 		}
+		snapshot.putSpinHistory(spinHistory);
+		return snapshot;
+	}
+
+	/**
+	 * Stop bets being placed or paid, e.g. while the journal position is taken. 
+	 * Appends to the journal are made under a stripe lock or the table monitor.
+	 */
+	private void lockBetTables() {
+		betTable.lockAll();
+		spunBetTable.lockAll();
+	}
 
-		public void setBetAmount(double betAmount) {
-			this.betAmount = betAmount;
+	private void unlockBetTables() {
+		spunBetTable.unlockAll();
+		betTable.unlockAll();
+	}
+	
+	/**
+	 * Restore the state of a table from a snapshot written by writeSnapshot() or checkpoint(), e.g. on a 
+	 * standby node. Call on a new table of the same wheel, before taking bets and before attaching a journal.
+	 * @param file
+	 * @throws IOException not a snapshot of this wheel, or corrupted
+	 */
+	public synchronized void restoreSnapshot(File file) throws IOException {
+		if(this.journal != null || round != 1 || !betTable.isEmpty()){
+			throw new IllegalStateException("Snapshot can only be restored into a new table");
+		}
+		TableSnapshot snapshot = TableSnapshot.read(file, getNoOfNumbers());
+		long journalPosition = snapshot.getLong();
+		round = snapshot.getLong();
+		currentNumber = snapshot.getInt();
+		int spunWinningNumber = snapshot.getInt();
+		boolean open = snapshot.getBoolean();
+		tableLimit = snapshot.getLong();
+		publishedSettlementRound = snapshot.getLong();
+		restoreBets(snapshot, betTable);
+		if(!open){
+			betTable.close();
+		}
+		restoreBets(snapshot, spunBetTable);
+		spunBetTable.setWinningNumber(spunWinningNumber);
+		spunRoundSettled = spunBetTable.isEmpty();
+		snapshot.getPlayerTotals(paidPlayerTotals);
+		snapshot.getSpinHistory(spinHistory);
+		snapshotJournalPosition = journalPosition;
+	}
+	
+	/**
+	 * Put the next bet table of the snapshot into the given table, and sum up its liabilities
+	 */
+	private void restoreBets(TableSnapshot snapshot, StripedBetTable bets) {
+		long[] liabilities = new long[getNoOfNumbers()];
+		snapshot.getBets((betId, playerId, betKind, coverage, betAmount) -> {
+			int stripe = bets.stripeOf(betId);
+			BetTable table = bets.lockStripe(stripe);
+			try {
+				if(table.put(betId, playerId, betKind, coverage, betAmount) < 0){
+					throw new IllegalStateException("Bet " + betId + " in the snapshot twice");
+				}
+				bets.added(1);
+			} finally {
+				bets.unlockStripe(stripe);
+			}
+			for(long remaining = coverage; remaining != 0; remaining &= remaining - 1){
+				int number = Long.numberOfTrailingZeros(remaining);
+				liabilities[number] += getPayoutMultiplier(betKind, coverage, number) * betAmount;
+			}
+		});
+		for(int number=0; number<liabilities.length; number++){
+			bets.addLiability(number, liabilities[number], Long.MAX_VALUE);
 		}
+	}
+	
+	/**
+	 * Limit the liability of any number in a round. Bets taking a number over the limit are refused.
+	 * The check is optimistic: bets placed at the same time may be refused when only one of them goes over.
+	 * @param tableLimit maximum sum paid out if a single number wins, no limit by default
+	 */
+	public void setTableLimit(long tableLimit) {
+		this.tableLimit = tableLimit;
+	}
+	
+	public long getTableLimit() {
+		return tableLimit;
+	}
+	
+	/**
+	 * @param number
+	 * @return sum paid out on the bets of the round taking bets if the number wins
+	 */
+	public long getLiability(int number) {
+		return betTable.getLiability(number);
+	}
+	
+	/**
+	 * @return worst case payout of the round taking bets, over all numbers
+	 */
+	public long getMaxExposure() {
+		return betTable.getMaxLiability();
+	}
+	
+	/**
+	 * @return IDs of the unpaid bets of the spun round covering the winning number
+	 */
+	public int[] getWinningBetIds() {
+		StripedBetTable bets = spunBetTable;
+		int winningNumber = bets.getWinningNumber();
+		int[] betIds = new int[0];
+		if(winningNumber < 0)	return betIds;
+		for(int stripe=0; stripe<bets.getNoOfStripes(); stripe++){
+			BetTable table = bets.lockStripe(stripe);
+			try {
+				int[] winningSlots = table.findCovering(winningNumber);
+				int noOfWinners = betIds.length;
+				betIds = Arrays.copyOf(betIds, noOfWinners + winningSlots.length);
+				for(int i=0; i<winningSlots.length; i++){
+					betIds[noOfWinners + i] = table.getBetId(winningSlots[i]);
+				}
+			} finally {
+				bets.unlockStripe(stripe);
+			}
+		}
+		return betIds;
+	}
 
-		public int[] getInsideBets() {
-			return insideBets;
+	/**
+	 * Calculate the payout of a bet against the winning number
+	 * @param table bet table holding the bet
+	 * @param slot slot of the bet in the table
+	 * @param winningNumber
+	 * @return payout total sum of money return from the table
+	 */
+	private long getPayout(BetTable table, int slot, int winningNumber) {
+		return getPayoutMultiplier(table.getBetKind(slot), table.getCoverage(slot), winningNumber) 
+				* table.getBetAmount(slot);
+	}
+	
+	/**
+	 * Payout rules shared by settlement and simulation
+	 * @param betKind outside bet kind or INSIDE_BET
+	 * @param coverage coverage mask of the bet
+	 * @param winningNumber
+	 * @return payout of one unit placed on the bet
+	 */
+	long getPayoutMultiplier(int betKind, long coverage, int winningNumber) {
+		if(betKind == INSIDE_BET){
+			return getInsideBetPayout(coverage, winningNumber);
 		}
+		return outsidePayouts[betKind][winningNumber];
+	}
+	
+	/**
+	 * @return coverage masks of all valid inside bets on this layout
+	 */
+	long[] getInsideBetLayouts() {
+		return insideBetLayouts.clone();
+	}
 
-		public void setInsideBets(int[] insideBets) {
-			this.insideBets = insideBets;
+	private static long getInsideBetPayout(long coverage, int winningNumber) {
+		if((coverage & (1L << winningNumber)) != 0){
+			return INSIDE_BET_PAYOUTS[Long.bitCount(coverage)];
+		}
+		return 0;
+	}
+	
+	/**
+	 * Convert the numbers of an inside bet into its coverage mask
+	 * @param insideBets
+	 * @return coverage mask, 0 if the numbers are not a valid inside bet on this layout
+	 */
+	private long getInsideBetCoverage(int[] insideBets) {
+		if(insideBets == null)	return 0;
+		long coverage = 0;
+		for(int number : insideBets){
+			if(number < 0 || number >= numbers.length)	return 0;
+			coverage |= 1L << number;
+		}
+		if(Long.bitCount(coverage) != insideBets.length)	return 0;
+		return Arrays.binarySearch(insideBetLayouts, coverage) >= 0 ? coverage : 0;
+	}
+	
+	private static long toCoverage(int... coveredNumbers) {
+		long coverage = 0;
+		for(int number : coveredNumbers){
+			coverage |= 1L << number;
+		}
+		return coverage;
+	}
+	
+	/**
+	 * Build all valid inside bets of the layout. Numbers 1 to 36 are laid out in rows of three, 
+	 * the bets on the zeros come from the layout.
+	 * @param wheelLayout
+	 * @return sorted coverage masks
+	 */
+	private static long[] buildInsideBetLayouts(WheelLayout wheelLayout) {
+		List<Long> layouts = new ArrayList<Long>();
+		for(int number=0; number<wheelLayout.getNoOfPockets(); number++){
+			layouts.add(toCoverage(number));
+		}
+		int maxGridNumber = wheelLayout.getNoOfGridNumbers();
+		for(int number=1; number<=maxGridNumber; number++){
+			boolean lastInRow = number%3 == 0;
+			boolean firstInRow = number%3 == 1;
+			if(!lastInRow && number+1 <= maxGridNumber)
+				layouts.add(toCoverage(number, number+1));
+			if(number+3 <= maxGridNumber)
+				layouts.add(toCoverage(number, number+3));
+			if(firstInRow && number+2 <= maxGridNumber)
+				layouts.add(toCoverage(number, number+1, number+2));
+			if(!lastInRow && number+4 <= maxGridNumber)
+				layouts.add(toCoverage(number, number+1, number+3, number+4));
+			if(firstInRow && number+5 <= maxGridNumber)
+				layouts.add(toCoverage(number, number+1, number+2, number+3, number+4, number+5));
+		}
+		for(long zeroBet : wheelLayout.getZeroBets()){
+			layouts.add(zeroBet);
 		}
+		long[] sortedLayouts = layouts.stream().mapToLong(Long::longValue).distinct().toArray();
+		Arrays.sort(sortedLayouts);
+		return sortedLayouts;
 	}
 
+	/**
+	 * Compile the bet type into its bet kind (Case sensitive)
+	 * @param betType bet type
+	 * @return index of the bet type in outsideBetTypes, INSIDE_BET if it is not an outside bet
+	 */
+	private int getOutsideBetKind(String betType) {
+		return outsideBetTypes.indexOf(betType);
+	}
+
+	/**
+	 * Return all possible outside bet types, those of the wheel layout. On the standard wheels as follow:
+	 * low/high
+	 * even/odd
+	 * red/black
+	 * dozen1: 1~12, dozen2: 13~24, dozen3:25~36
+	 * column1/column2/column3 Vertical columns
+	 * basket: 0,1,2,3 and the double and triple zeros of the wheel
+	 * @return all possible outside bet types
+	 */
+	public String[] getOutsideBetTypes() {
+		return outsideBetTypes.toArray(new String[outsideBetTypes.size()]);
+	}
 
-	
 }
 
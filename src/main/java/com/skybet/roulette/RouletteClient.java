@@ -0,0 +1,221 @@
+package com.skybet.roulette;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Blocking client of a RouletteServer over a single connection, one request at a time.
+ * Returns the status of the response, see RouletteServer for the protocol.
+ * @author benny
+ *
+ */
+public class RouletteClient implements AutoCloseable
+{
+	private final SocketChannel channel;
+	private final ByteBuffer request = ByteBuffer.allocate(4 + RouletteServer.MAX_FRAME_SIZE);
+	private final ByteBuffer response = ByteBuffer.allocate(4 + 1 + 1 + Roulette.MAX_TOTAL * 8);
+	/**
+	 * Outside bet types of the wheel layout of the server, fetched with the first outside bet
+	 */
+	private List<String> outsideBetTypes;
+
+	/**
+	 * @param address of the server
+	 * @throws IOException
+	 */
+	public RouletteClient(InetSocketAddress address) throws IOException {
+		this.channel = SocketChannel.open(address);
+		channel.socket().setTcpNoDelay(true);
+	}
+
+	/**
+	 * @param betType outside bet type, see getOutsideBetTypes()
+	 * @return status: OK, REFUSED or DUPLICATE
+	 * @throws IOException
+	 */
+	public synchronized byte placeBet(int betId, String betType, long betAmount) throws IOException {
+		int betKind = outsideBetTypes().indexOf(betType);
+		start(RouletteServer.PLACE_OUTSIDE_BET).putInt(betId).put((byte) betKind).putLong(betAmount);
+		return call().get();
+	}
+
+	/**
+	 * @return outside bet types of the wheel layout of the server, fetched once
+	 * @throws IOException
+	 */
+	public synchronized String[] getOutsideBetTypes() throws IOException {
+		List<String> betTypes = outsideBetTypes();
+		return betTypes.toArray(new String[betTypes.size()]);
+	}
+
+	private List<String> outsideBetTypes() throws IOException {
+		if(outsideBetTypes == null){
+			start(RouletteServer.GET_OUTSIDE_BET_TYPES);
+			ByteBuffer in = call();
+			byte status = in.get();
+			if(status != RouletteServer.OK){
+				throw new IOException("Outside bet types refused with status " + status);
+			}
+			String[] betTypes = new String[in.get() & 0xFF];
+			for(int i=0; i<betTypes.length; i++){
+				byte[] name = new byte[in.get() & 0xFF];
+				in.get(name);
+				betTypes[i] = new String(name, StandardCharsets.UTF_8);
+			}
+			outsideBetTypes = Arrays.asList(betTypes);
+		}
+		return outsideBetTypes;
+	}
+
+	/**
+	 * @param insideBets numbers covered
+	 * @return status: OK, REFUSED or DUPLICATE
+	 * @throws IOException
+	 */
+	public synchronized byte placeBet(int betId, int[] insideBets, long betAmount) throws IOException {
+		start(RouletteServer.PLACE_INSIDE_BET).putInt(betId).put((byte) insideBets.length);
+		for(int number : insideBets){
+			request.put((byte) number);
+		}
+		request.putLong(betAmount);
+		return call().get();
+	}
+
+	/**
+	 * @return winning number of the last spun round, null if no round spun yet
+	 * @throws IOException
+	 */
+	public synchronized SpinResult getSpinResult() throws IOException {
+		start(RouletteServer.GET_SPIN_RESULT);
+		ByteBuffer in = call();
+		if(in.get() != RouletteServer.OK)	return null;
+		return new SpinResult(in.getLong(), in.get());
+	}
+
+	/**
+	 * @return payout of the bet
+	 * @throws IOException bet not found in the spun round
+	 */
+	public synchronized long pay(int betId) throws IOException {
+		start(RouletteServer.PAY).putInt(betId);
+		ByteBuffer in = call();
+		if(in.get() != RouletteServer.OK){
+			throw new IOException("Bet " + betId + " not found");
+		}
+		return in.getLong();
+	}
+
+	/**
+	 * Stop taking bets of the current round
+	 * @return round closed
+	 * @throws IOException
+	 * @throws IllegalStateException not connected to the coordinator address of the server
+	 */
+	public synchronized long closeBetting() throws IOException {
+		start(RouletteServer.CLOSE_BETTING);
+		ByteBuffer in = call();
+		byte status = in.get();
+		if(status != RouletteServer.OK){
+			throw new IllegalStateException("Close betting refused with status " + status);
+		}
+		return in.getLong();
+	}
+
+	/**
+	 * Spin the round taking bets to the given number
+	 * @return round spun
+	 * @throws IOException
+	 * @throws IllegalStateException the previous round is not settled, the number not on the wheel,
+	 * or not connected to the coordinator address of the server
+	 */
+	public synchronized long spinTo(int winningNumber) throws IOException {
+		start(RouletteServer.SPIN_TO).put((byte) winningNumber);
+		ByteBuffer in = call();
+		byte status = in.get();
+		if(status != RouletteServer.OK){
+			throw new IllegalStateException("Spin to " + winningNumber + " refused with status " + status);
+		}
+		return in.getLong();
+	}
+
+	/**
+	 * Settle the spun round
+	 * @return totals of the round
+	 * @throws IOException
+	 * @throws IllegalStateException no round spun yet, or not connected to the coordinator address of the server
+	 */
+	public synchronized RoundTotals settleRound() throws IOException {
+		start(RouletteServer.SETTLE_ROUND);
+		ByteBuffer in = call();
+		byte status = in.get();
+		if(status == RouletteServer.NOT_FOUND){
+			throw new IllegalStateException("No round spun yet");
+		}
+		if(status != RouletteServer.OK){
+			throw new IllegalStateException("Settle round refused with status " + status);
+		}
+		return new RoundTotals(in.getLong(), in.get(), in.getLong(), in.getInt(), in.getInt());
+	}
+
+	/**
+	 * @return liability of each number in the round taking bets
+	 * @throws IOException
+	 * @throws IllegalStateException not connected to the coordinator address of the server
+	 */
+	public synchronized long[] getLiabilities() throws IOException {
+		start(RouletteServer.GET_LIABILITIES);
+		ByteBuffer in = call();
+		byte status = in.get();
+		if(status != RouletteServer.OK){
+			throw new IllegalStateException("Liabilities refused with status " + status);
+		}
+		long[] liabilities = new long[in.get() & 0xFF];
+		for(int number=0; number<liabilities.length; number++){
+			liabilities[number] = in.getLong();
+		}
+		return liabilities;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private ByteBuffer start(byte opcode) {
+		request.clear();
+		return request.putInt(0).put(opcode);
+	}
+
+	/**
+	 * Send the request and wait for its response
+	 * @return response positioned at the status
+	 */
+	private ByteBuffer call() throws IOException {
+		request.putInt(0, request.position() - 4).flip();
+		while(request.hasRemaining()){
+			channel.write(request);
+		}
+		response.clear().limit(4);
+		read();
+		int length = response.getInt(0);
+		if(length < 1 || length > response.capacity() - 4){
+			throw new IOException("Bad response length " + length);
+		}
+		response.limit(4 + length);
+		read();
+		return response.position(4);
+	}
+
+	private void read() throws IOException {
+		while(response.hasRemaining()){
+			if(channel.read(response) < 0){
+				throw new EOFException("Server closed the connection");
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.skybet.roulette;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the spin results and the round settlements of a Roulette as Flow streams.
+ * Every subscriber has its own bounded buffer and is fed on the executor as it requests more,
+ * so spinning and settling never wait for a subscriber, and a slow subscriber only falls behind itself.
+ * <p>
+ * Spins are lossy: a spin that does not fit into the buffer of a subscriber left behind is dropped
+ * for that subscriber only, and counted. Spins carry their round, so a subscriber can tell a gap.
+ * <p>
+ * Settlements are the credit list of the wallet and are never dropped silently. Every settlement 
+ * subscriber is fed by a publisher of its own. A subscriber falling a whole buffer behind gets 
+ * onError instead of the settlement not fitting, and no further settlements: it has to catch up 
+ * elsewhere and subscribe again. Every subscriber gets the same RoundSettlement, which is immutable.
+ * @author benny
+ *
+ */
+public class RouletteEvents implements AutoCloseable
+{
+	private final SubmissionPublisher<SpinResult> spins;
+	/**
+	 * One publisher by settlement subscriber
+	 */
+	private final List<SubmissionPublisher<RoundSettlement>> settlements = 
+			new CopyOnWriteArrayList<SubmissionPublisher<RoundSettlement>>();
+	private final Executor executor;
+	private final int bufferCapacity;
+	private final LongAdder noOfDroppedEvents = new LongAdder();
+	private volatile boolean closed;
+
+	/**
+	 * Events delivered on the common pool, with buffers of Flow.defaultBufferSize() events
+	 */
+	public RouletteEvents(){
+		this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+	}
+
+	/**
+	 * @param executor runs the subscribers
+	 * @param bufferCapacity events kept for each subscriber, rounded up to a power of two
+	 */
+	public RouletteEvents(Executor executor, int bufferCapacity){
+		this.spins = new SubmissionPublisher<SpinResult>(executor, bufferCapacity);
+		this.executor = executor;
+		this.bufferCapacity = bufferCapacity;
+	}
+
+	/**
+	 * @return winning number of every spin, published once the round is spun
+	 */
+	public Flow.Publisher<SpinResult> spins() {
+		return spins;
+	}
+
+	/**
+	 * @return payouts of the winning bets of every round settled with settleRound(). A subscriber
+	 * a whole buffer behind gets onError with an IllegalStateException rather than miss one.
+	 */
+	public Flow.Publisher<RoundSettlement> settlements() {
+		return this::subscribeSettlements;
+	}
+
+	/**
+	 * @return spins dropped so far over all subscribers because their buffer was full, and settlement 
+	 * subscribers ended for falling behind
+	 */
+	public long getNoOfDroppedEvents() {
+		return noOfDroppedEvents.sum();
+	}
+
+	void publishSpin(long round, int winningNumber) {
+		if(spins.hasSubscribers()){
+			spins.offer(new SpinResult(round, winningNumber), this::dropped);
+		}
+	}
+
+	void publishSettlement(RoundSettlement settlement) {
+		for(SubmissionPublisher<RoundSettlement> publisher : settlements){
+			if(!publisher.hasSubscribers()){
+				//cancelled
+				settlements.remove(publisher);
+				publisher.close();
+			} else if(publisher.offer(settlement, null) < 0){
+				noOfDroppedEvents.increment();
+				settlements.remove(publisher);
+				publisher.closeExceptionally(new IllegalStateException("Settlement of round " 
+						+ settlement.getRound() + " does not fit into a buffer of " + bufferCapacity));
+			}
+		}
+	}
+
+	/**
+	 * Complete the streams of every subscriber, once the events in their buffers are delivered
+	 */
+	public void close() {
+		closed = true;
+		spins.close();
+		for(SubmissionPublisher<RoundSettlement> publisher : settlements){
+			publisher.close();
+		}
+		settlements.clear();
+	}
+
+	private void subscribeSettlements(Flow.Subscriber<? super RoundSettlement> subscriber) {
+		SubmissionPublisher<RoundSettlement> publisher = new SubmissionPublisher<RoundSettlement>(executor, bufferCapacity);
+		publisher.subscribe(subscriber);
+		if(closed){
+			publisher.close();
+		} else {
+			settlements.add(publisher);
+		}
+	}
+
+	private boolean dropped(Flow.Subscriber<?> subscriber, Object event) {
+		noOfDroppedEvents.increment();
+		return false;
+	}
+}
@@ -0,0 +1,173 @@
+package com.skybet.roulette;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Latency histograms, bet counters and gauges of a Roulette. Recording only touches striped
+ * counters, so metrics are always on.
+ * Read in process with snapshot(), or through JMX once registered with registerMBean().
+ * @author benny
+ *
+ */
+public class RouletteMetrics implements DynamicMBean
+{
+	/**
+	 * Timed operations
+	 */
+	public enum Operation {
+		PLACE_BET("placeBet"), PLACE_BETS("placeBets"), PAY("pay"), SPIN("spin"), SETTLE_ROUND("settleRound"),
+		SNAPSHOT("writeSnapshot");
+
+		private final String metricName;
+
+		Operation(String metricName){
+			this.metricName = metricName;
+		}
+	}
+
+	private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+	private final String[] betNames;
+	private final LongAdder[] betCounts;
+	private final LongAdder lockWaitNanos = new LongAdder();
+	private final LongAdder lockContentions = new LongAdder();
+	private final LongSupplier openBets;
+	private final LongSupplier unsettledBets;
+
+	/**
+	 * @param betNames name of every bet counter
+	 * @param openBets bets of the round taking bets
+	 * @param unsettledBets bets of the spun round not paid yet
+	 */
+	RouletteMetrics(String[] betNames, LongSupplier openBets, LongSupplier unsettledBets){
+		for(int i=0; i<latencies.length; i++){
+			latencies[i] = new LatencyHistogram();
+		}
+		this.betNames = betNames;
+		this.betCounts = new LongAdder[betNames.length];
+		for(int i=0; i<betCounts.length; i++){
+			betCounts[i] = new LongAdder();
+		}
+		this.openBets = openBets;
+		this.unsettledBets = unsettledBets;
+	}
+
+	/**
+	 * @param operation
+	 * @param startNanos System.nanoTime() at the start of the operation
+	 */
+	void recordLatency(Operation operation, long startNanos) {
+		latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @param bet index of the bet counter
+	 */
+	void countBet(int bet) {
+		betCounts[bet].increment();
+	}
+
+	/**
+	 * @param nanos time spent waiting for a contended lock
+	 */
+	void recordLockWait(long nanos) {
+		lockWaitNanos.add(nanos);
+		lockContentions.increment();
+	}
+
+	public LatencyHistogram getLatency(Operation operation) {
+		return latencies[operation.ordinal()];
+	}
+
+	/**
+	 * All metrics by name. Latencies are in nanoseconds.
+	 * @return e.g. placeBet.count, placeBet.p50, placeBet.p99, placeBet.p999, placeBet.max,
+	 * bets.red, bets.straight, openBets, unsettledBets, lockWait.nanos, lockWait.count
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new LinkedHashMap<String, Long>();
+		for(Operation operation : Operation.values()){
+			long[] counts = latencies[operation.ordinal()].snapshot();
+			snapshot.put(operation.metricName + ".count", LatencyHistogram.count(counts));
+			snapshot.put(operation.metricName + ".p50", LatencyHistogram.valueAt(counts, 0.5));
+			snapshot.put(operation.metricName + ".p99", LatencyHistogram.valueAt(counts, 0.99));
+			snapshot.put(operation.metricName + ".p999", LatencyHistogram.valueAt(counts, 0.999));
+			snapshot.put(operation.metricName + ".max", LatencyHistogram.max(counts));
+		}
+		for(int i=0; i<betNames.length; i++){
+			snapshot.put("bets." + betNames[i], betCounts[i].sum());
+		}
+		snapshot.put("openBets", openBets.getAsLong());
+		snapshot.put("unsettledBets", unsettledBets.getAsLong());
+		snapshot.put("lockWait.nanos", lockWaitNanos.sum());
+		snapshot.put("lockWait.count", lockContentions.sum());
+		return snapshot;
+	}
+
+	/**
+	 * Register the metrics in the platform MBean server as com.skybet.roulette:type=Roulette,name=[name]
+	 * @param name name of the table
+	 * @return name of the MBean
+	 * @throws JMException
+	 */
+	public ObjectName registerMBean(String name) throws JMException {
+		ObjectName objectName = new ObjectName("com.skybet.roulette:type=Roulette,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Long value = snapshot().get(attribute);
+		if(value == null){
+			throw new AttributeNotFoundException(attribute);
+		}
+		return value;
+	}
+
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read only");
+	}
+
+	public AttributeList getAttributes(String[] attributes) {
+		Map<String, Long> snapshot = snapshot();
+		AttributeList list = new AttributeList();
+		for(String attribute : attributes){
+			if(snapshot.containsKey(attribute)){
+				list.add(new Attribute(attribute, snapshot.get(attribute)));
+			}
+		}
+		return list;
+	}
+
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName), "Metrics have no operations");
+	}
+
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+		for(String name : snapshot().keySet()){
+			attributes.add(new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false));
+		}
+		return new MBeanInfo(getClass().getName(), "Roulette metrics",
+				attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+	}
+}
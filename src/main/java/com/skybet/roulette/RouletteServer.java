@@ -0,0 +1,691 @@
+package com.skybet.roulette;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non blocking network front end of a Roulette. A few event loop threads each run a selector over
+ * many connections, the first one also accepts new connections and hands them out round robin.
+ * The requests read are handled by a pool of workers, so a request waiting for the journal or settling
+ * the table only holds up its own connection. Consecutive bets read from a connection are placed as
+ * one batch, and wait for the journal once.
+ * <p>
+ * Frames are a big endian int length followed by that many bytes. A request starts with its opcode,
+ * a response with its status:
+ * <pre>
+ * PLACE_OUTSIDE_BET  betId int, betType byte (index in getOutsideBetTypes()), betAmount long -> status
+ * PLACE_INSIDE_BET   betId int, count byte, numbers byte[count], betAmount long             -> status
+ * GET_SPIN_RESULT                                                                         -> status, round long, winningNumber byte
+ * PAY                betId int                                                            -> status, payout long
+ * GET_OUTSIDE_BET_TYPES                                                                   -> status, count byte, then for each
+ *                                                                                            length byte, UTF-8 name
+ * </pre>
+ * The betType of PLACE_OUTSIDE_BET indexes the outside bet types of the wheel layout of the server, as answered by 
+ * GET_OUTSIDE_BET_TYPES.
+ * A shard of a sharded wheel also takes the requests of its ShardCoordinator, on a coordinator address
+ * of its own. A bettor could otherwise spin the wheel to the number of its bet, so these requests get
+ * BAD_REQUEST on the bettor address, and the coordinator address is to be reachable by the coordinator only.
+ * The coordinator address takes the bettor requests as well.
+ * <pre>
+ * CLOSE_BETTING                                            -> status, round long
+ * SPIN_TO            winningNumber byte                    -> status, round long
+ * SETTLE_ROUND                                             -> status, round long, winningNumber byte, totalPayout long,
+ *                                                             noOfWinningBets int, noOfLosingBets int
+ * GET_LIABILITIES                                          -> status, count byte, liability long[count]
+ * </pre>
+ * SETTLE_ROUND of a round settled already answers the totals of its first settlement.
+ * Amounts are in minor units of the currency. Requests of a connection can be pipelined, responses come back in the same order.
+ * A connection sending a frame longer than MAX_FRAME_SIZE is closed.
+ * @author benny
+ *
+ */
+public class RouletteServer implements AutoCloseable
+{
+	public static final byte PLACE_OUTSIDE_BET = 1;
+	public static final byte PLACE_INSIDE_BET = 2;
+	public static final byte GET_SPIN_RESULT = 3;
+	public static final byte PAY = 4;
+	public static final byte CLOSE_BETTING = 5;
+	public static final byte SPIN_TO = 6;
+	public static final byte SETTLE_ROUND = 7;
+	public static final byte GET_LIABILITIES = 8;
+	public static final byte GET_OUTSIDE_BET_TYPES = 9;
+
+	public static final byte OK = 0;
+	/**
+	 * Betting closed, invalid bet or over the table limit. For SPIN_TO, previous round not settled.
+	 */
+	public static final byte REFUSED = 1;
+	public static final byte DUPLICATE = 2;
+	public static final byte NOT_FOUND = 3;
+	public static final byte BAD_REQUEST = 4;
+
+	public static final int MAX_FRAME_SIZE = 256;
+	private static final int MAX_RESPONSE_SIZE = 4 + 1 + 1 + Roulette.MAX_TOTAL * 8;
+	private static final int BUFFER_SIZE = 4096;
+	/**
+	 * Workers by event loop. Requests of different connections waiting for the journal meanwhile 
+	 * share its sync.
+	 */
+	private static final int WORKERS_PER_EVENT_LOOP = 8;
+
+	private final Roulette roulette;
+	private final String[] outsideBetTypes;
+	/**
+	 * Response to GET_OUTSIDE_BET_TYPES after the status
+	 */
+	private final byte[] encodedOutsideBetTypes;
+	private final ServerSocketChannel serverChannel;
+	/**
+	 * Accepts the connections of the coordinator, null without one
+	 */
+	private final ServerSocketChannel coordinatorChannel;
+	private final EventLoop[] eventLoops;
+	private final ExecutorService workers;
+	private int nextEventLoop;
+	private volatile boolean running = true;
+	/**
+	 * Totals of the last round settled through SETTLE_ROUND, answered again if it is settled again
+	 */
+	private RoundTotals lastSettled;
+
+	/**
+	 * Bind a server taking the requests of bettors only, and start its event loops
+	 * @param roulette
+	 * @param address e.g. new InetSocketAddress("localhost", 0) for any free port
+	 * @param noOfThreads event loop threads
+	 * @throws IOException
+	 */
+	public RouletteServer(Roulette roulette, InetSocketAddress address, int noOfThreads) throws IOException {
+		this(roulette, address, null, noOfThreads);
+	}
+
+	/**
+	 * Bind the server and start its event loops
+	 * @param roulette
+	 * @param address bettors connect to, e.g. new InetSocketAddress("localhost", 0) for any free port
+	 * @param coordinatorAddress the coordinator connects to, on a network bettors cannot reach. 
+	 * Null for a table without a coordinator.
+	 * @param noOfThreads event loop threads, each with WORKERS_PER_EVENT_LOOP workers
+	 * @throws IOException
+	 */
+	public RouletteServer(Roulette roulette, InetSocketAddress address, InetSocketAddress coordinatorAddress, 
+			int noOfThreads) throws IOException {
+		this.roulette = roulette;
+		this.outsideBetTypes = roulette.getOutsideBetTypes();
+		this.encodedOutsideBetTypes = encode(outsideBetTypes);
+		this.serverChannel = ServerSocketChannel.open();
+		ServerSocketChannel coordinatorChannel = null;
+		try {
+			serverChannel.bind(address, 1024);
+			serverChannel.configureBlocking(false);
+			if(coordinatorAddress != null){
+				coordinatorChannel = ServerSocketChannel.open();
+				coordinatorChannel.bind(coordinatorAddress);
+				coordinatorChannel.configureBlocking(false);
+			}
+		} catch (IOException e) {
+			serverChannel.close();
+			if(coordinatorChannel != null){
+				coordinatorChannel.close();
+			}
+			throw e;
+		}
+		this.coordinatorChannel = coordinatorChannel;
+		this.eventLoops = new EventLoop[noOfThreads];
+		for(int i=0; i<noOfThreads; i++){
+			eventLoops[i] = new EventLoop(i);
+		}
+		AtomicInteger noOfWorkers = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(noOfThreads * WORKERS_PER_EVENT_LOOP, runnable -> {
+			Thread thread = new Thread(runnable, "roulette-worker-" + noOfWorkers.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		serverChannel.register(eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+		if(coordinatorChannel != null){
+			coordinatorChannel.register(eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+		}
+		for(EventLoop eventLoop : eventLoops){
+			eventLoop.thread.start();
+		}
+	}
+
+	/**
+	 * @return port the server listens on for bettors
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * @return port the server listens on for its coordinator, -1 without one
+	 */
+	public int getCoordinatorPort() {
+		return coordinatorChannel == null ? -1 : coordinatorChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Stop accepting, close every connection and stop the event loops, then wait for the requests
+	 * being handled
+	 */
+	public void close() throws IOException {
+		running = false;
+		for(EventLoop eventLoop : eventLoops){
+			eventLoop.selector.wakeup();
+		}
+		try {
+			for(EventLoop eventLoop : eventLoops){
+				eventLoop.thread.join();
+			}
+			workers.shutdown();
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			workers.shutdown();
+			Thread.currentThread().interrupt();
+		}
+		serverChannel.close();
+		if(coordinatorChannel != null){
+			coordinatorChannel.close();
+		}
+	}
+
+	/**
+	 * Run a server as a process of its own, e.g. a shard of a sharded wheel. Prints the port it listens on
+	 * for bettors, then the one for its coordinator, each on a line of its own. Serves until its standard 
+	 * input is closed, so it stops with the process that started it.
+	 * @param args port (0 for any free port), number of numbers (37 by default), event loop threads (2 by default),
+	 * coordinator port (0 for any free port by default)
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+		int noOfNumbers = args.length > 1 ? Integer.parseInt(args[1]) : Roulette.EUROPEAN_TOTAL;
+		int noOfThreads = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		int coordinatorPort = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		try(RouletteServer server = new RouletteServer(new Roulette(noOfNumbers), new InetSocketAddress("localhost", port), 
+				new InetSocketAddress("localhost", coordinatorPort), noOfThreads)){
+			System.out.println(server.getPort());
+			System.out.println(server.getCoordinatorPort());
+			System.out.flush();
+			while(System.in.read() >= 0){
+				//serve until the parent closes our input
+			}
+		}
+	}
+
+	/**
+	 * Handle one request frame. The limit of the input is the end of the frame.
+	 * @param in positioned after the length
+	 * @param out room for at least MAX_RESPONSE_SIZE bytes
+	 * @param coordinator true on a connection of the coordinator address
+	 */
+	void handleRequest(ByteBuffer in, ByteBuffer out, boolean coordinator) {
+		int lengthPosition = out.position();
+		out.putInt(0);
+		try {
+			byte opcode = in.get();
+			if(!coordinator && isCoordinatorRequest(opcode)){
+				out.put(BAD_REQUEST);
+				out.putInt(lengthPosition, out.position() - lengthPosition - 4);
+				return;
+			}
+			switch (opcode) {
+			case PLACE_OUTSIDE_BET: {
+				int betId = in.getInt();
+				int betType = in.get();
+				long betAmount = in.getLong();
+				if(betType < 0 || betType >= outsideBetTypes.length){
+					out.put(REFUSED);
+				} else {
+					out.put(placeBet(betId, outsideBetTypes[betType], null, betAmount));
+				}
+				break;
+			}
+			case PLACE_INSIDE_BET: {
+				int betId = in.getInt();
+				int[] insideBets = new int[in.get() & 0xFF];
+				for(int i=0; i<insideBets.length; i++){
+					insideBets[i] = in.get();
+				}
+				out.put(placeBet(betId, null, insideBets, in.getLong()));
+				break;
+			}
+			case GET_SPIN_RESULT: {
+				long round = roulette.getRound() - 1;
+				out.put(round > 0 ? OK : NOT_FOUND);
+				out.putLong(round);
+				out.put((byte) roulette.getCurrentNumber());
+				break;
+			}
+			case PAY: {
+				int betId = in.getInt();
+				try {
+					long payout = roulette.pay(betId);
+					out.put(OK);
+					out.putLong(payout);
+				} catch (Exception e) {
+					out.put(NOT_FOUND);
+					out.putLong(0);
+				}
+				break;
+			}
+			case CLOSE_BETTING: {
+				roulette.closeBetting();
+				out.put(OK);
+				out.putLong(roulette.getRound());
+				break;
+			}
+			case SPIN_TO: {
+				int winningNumber = in.get();
+				if(winningNumber < 0 || winningNumber >= roulette.getNoOfNumbers()){
+					out.put(BAD_REQUEST);
+					out.putLong(0);
+					break;
+				}
+				try {
+					roulette.spinTo(winningNumber);
+					out.put(OK);
+				} catch (IllegalStateException e) {
+					out.put(REFUSED);
+				}
+				out.putLong(roulette.getRound() - 1);
+				break;
+			}
+			case SETTLE_ROUND: {
+				try {
+					RoundTotals totals = settleRound();
+					out.put(OK);
+					out.putLong(totals.getRound());
+					out.put((byte) totals.getWinningNumber());
+					out.putLong(totals.getTotalPayout());
+					out.putInt(totals.getNoOfWinningBets());
+					out.putInt(totals.getNoOfLosingBets());
+				} catch (IllegalStateException e) {
+					out.put(NOT_FOUND);
+				}
+				break;
+			}
+			case GET_OUTSIDE_BET_TYPES: {
+				out.put(OK);
+				out.put(encodedOutsideBetTypes);
+				break;
+			}
+			case GET_LIABILITIES: {
+				out.put(OK);
+				out.put((byte) roulette.getNoOfNumbers());
+				for(int number=0; number<roulette.getNoOfNumbers(); number++){
+					out.putLong(roulette.getLiability(number));
+				}
+				break;
+			}
+			default:
+				out.put(BAD_REQUEST);
+			}
+		} catch (BufferUnderflowException e) {
+			out.position(lengthPosition + 4);
+			out.put(BAD_REQUEST);
+		}
+		out.putInt(lengthPosition, out.position() - lengthPosition - 4);
+	}
+
+	/**
+	 * Settle the spun round. A round settled again answers the totals of its first settlement instead of none,
+	 * so a coordinator can retry a settlement whose response was lost.
+	 * @throws IllegalStateException no round spun yet
+	 */
+	private synchronized RoundTotals settleRound() {
+		RoundSettlement settlement = roulette.settleRound();
+		if(lastSettled == null || lastSettled.getRound() != settlement.getRound()){
+			lastSettled = new RoundTotals(settlement.getRound(), settlement.getWinningNumber(), 
+					settlement.getTotalPayout(), settlement.size(), settlement.getNoOfLosingBets());
+		}
+		return lastSettled;
+	}
+
+	/**
+	 * @return count byte, then the length byte and UTF-8 bytes of every bet type
+	 * @throws IllegalArgumentException too many or too long to fit into a response
+	 */
+	private static byte[] encode(String[] betTypes) {
+		ByteBuffer encoded = ByteBuffer.allocate(MAX_RESPONSE_SIZE - 4 - 1);
+		try {
+			encoded.put((byte) betTypes.length);
+			for(String betType : betTypes){
+				byte[] name = betType.getBytes(StandardCharsets.UTF_8);
+				if(name.length > 0xFF){
+					throw new IllegalArgumentException("Outside bet type name too long: " + betType);
+				}
+				encoded.put((byte) name.length).put(name);
+			}
+		} catch (BufferOverflowException e) {
+			throw new IllegalArgumentException("Outside bet types do not fit into a response", e);
+		}
+		return Arrays.copyOf(encoded.array(), encoded.position());
+	}
+
+	/**
+	 * Place the run of complete PLACE_OUTSIDE_BET and PLACE_INSIDE_BET frames at the position of the input
+	 * with a single Roulette.placeBets(), so they take each stripe lock and wait for the journal once.
+	 * Consumes the frames and answers each of them, in order.
+	 * @param in positioned at the length of a frame
+	 * @param out room for the responses
+	 * @return false, nothing consumed, if fewer than two bets start at the position
+	 */
+	boolean placeBets(ByteBuffer in, ByteBuffer out) {
+		int noOfBets = 0;
+		int batchSize = 0;
+		int end = in.position();
+		while((noOfBets + 1) * 5 <= out.remaining()){
+			int size = encodedSizeOf(in, end);
+			if(size == 0)	break;
+			noOfBets++;
+			batchSize += size;
+			end += 4 + in.getInt(end);
+		}
+		if(noOfBets < 2)	return false;
+		ByteBuffer batch = ByteBuffer.allocate(batchSize);
+		while(in.position() < end){
+			in.getInt();
+			byte opcode = in.get();
+			batch.putInt(in.getInt());
+			if(opcode == PLACE_OUTSIDE_BET){
+				byte betType = in.get();
+				//a negative type would read as an inside bet
+				batch.put(betType < 0 ? Byte.MIN_VALUE : betType);
+			} else {
+				int count = in.get() & 0xFF;
+				batch.put((byte) Roulette.INSIDE_BET).put((byte) count);
+				for(int i=0; i<count; i++){
+					batch.put(in.get());
+				}
+			}
+			batch.putLong(in.getLong());
+		}
+		byte[] statuses = new byte[noOfBets];
+		roulette.placeBets(batch.flip(), statuses);
+		for(byte status : statuses){
+			out.putInt(1);
+			out.put(status == Roulette.BET_ACCEPTED ? OK : status == Roulette.BET_DUPLICATE ? DUPLICATE : REFUSED);
+		}
+		return true;
+	}
+
+	/**
+	 * @return size of the bet of the frame at the position as encoded for Roulette.placeBets(), 
+	 * 0 if it is not a complete and well formed PLACE_OUTSIDE_BET or PLACE_INSIDE_BET frame
+	 */
+	private static int encodedSizeOf(ByteBuffer in, int position) {
+		if(in.limit() - position < 4 + 1 + 4 + 1)	return 0;
+		int length = in.getInt(position);
+		if(length < 1 + 4 + 1 + 8 || length > MAX_FRAME_SIZE || in.limit() - position - 4 < length)	return 0;
+		byte opcode = in.get(position + 4);
+		if(opcode == PLACE_OUTSIDE_BET && length == 1 + 4 + 1 + 8){
+			return 4 + 1 + 8;
+		}
+		if(opcode == PLACE_INSIDE_BET && length == 1 + 4 + 1 + (in.get(position + 9) & 0xFF) + 8){
+			return 4 + 1 + 1 + (in.get(position + 9) & 0xFF) + 8;
+		}
+		return 0;
+	}
+
+	private static boolean isCoordinatorRequest(byte opcode) {
+		return opcode == CLOSE_BETTING || opcode == SPIN_TO || opcode == SETTLE_ROUND || opcode == GET_LIABILITIES;
+	}
+
+	private byte placeBet(int betId, String betType, int[] insideBets, long betAmount) {
+		try {
+			boolean placed = betType != null ? roulette.placeBet(betId, betType, betAmount)
+					: roulette.placeBet(betId, insideBets, betAmount);
+			return placed ? OK : REFUSED;
+		} catch (Exception e) {
+			return DUPLICATE;
+		}
+	}
+
+	/**
+	 * One selector thread serving many connections
+	 */
+	private class EventLoop implements Runnable {
+		private final Selector selector;
+		private final Thread thread;
+		private final Queue<Connection> newConnections = new ConcurrentLinkedQueue<Connection>();
+		/**
+		 * Connections whose frames a worker has handled, to be written and read again
+		 */
+		private final Queue<Connection> handledConnections = new ConcurrentLinkedQueue<Connection>();
+
+		EventLoop(int index) throws IOException {
+			this.selector = Selector.open();
+			this.thread = new Thread(this, "roulette-server-" + index);
+			thread.setDaemon(true);
+		}
+
+		void addConnection(Connection connection) {
+			newConnections.add(connection);
+			selector.wakeup();
+		}
+
+		void handled(Connection connection) {
+			handledConnections.add(connection);
+			selector.wakeup();
+		}
+
+		public void run() {
+			try {
+				while(running){
+					selector.select();
+					Connection connection;
+					while((connection = newConnections.poll()) != null){
+						try {
+							connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+						} catch (IOException e) {
+							connection.channel.close();
+						}
+					}
+					while((connection = handledConnections.poll()) != null){
+						connection.handled();
+					}
+					for(SelectionKey key : selector.selectedKeys()){
+						if(!key.isValid())	continue;
+						if(key.isAcceptable()){
+							accept((ServerSocketChannel) key.channel());
+						} else {
+							((Connection) key.attachment()).handle(key);
+						}
+					}
+					selector.selectedKeys().clear();
+				}
+			} catch (IOException e) {
+				//selector failed, the connections of this loop are closed below
+			} finally {
+				for(SelectionKey key : selector.keys()){
+					close(key);
+				}
+				Connection connection;
+				while((connection = newConnections.poll()) != null){
+					try {
+						connection.channel.close();
+					} catch (IOException e) {
+						//closing anyway
+					}
+				}
+				try {
+					selector.close();
+				} catch (IOException e) {
+					//closing anyway
+				}
+			}
+		}
+
+		/**
+		 * Accept every pending connection. Failing to accept, e.g. out of file descriptors, 
+		 * leaves the connection pending for the next try.
+		 */
+		private void accept(ServerSocketChannel acceptingChannel) {
+			try {
+				SocketChannel channel;
+				while((channel = acceptingChannel.accept()) != null){
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					EventLoop eventLoop = eventLoops[nextEventLoop];
+					eventLoop.addConnection(new Connection(channel, acceptingChannel == coordinatorChannel, eventLoop));
+					nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+				}
+			} catch (IOException e) {
+				//try again on the next select
+			}
+		}
+	}
+
+	/**
+	 * Buffers of a connection. Input is only handled while the output has room for a response,
+	 * so a client not reading its responses stops being read. While a worker handles its frames
+	 * the event loop leaves the connection alone, so its requests are handled one batch at a time, in order.
+	 */
+	private class Connection {
+		private final SocketChannel channel;
+		private final boolean coordinator;
+		private final EventLoop eventLoop;
+		private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+		private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+		private SelectionKey key;
+		/**
+		 * A worker has the buffers
+		 */
+		private boolean handling;
+		/**
+		 * The frames last handled broke the protocol
+		 */
+		private boolean failed;
+
+		Connection(SocketChannel channel, boolean coordinator, EventLoop eventLoop){
+			this.channel = channel;
+			this.coordinator = coordinator;
+			this.eventLoop = eventLoop;
+		}
+
+		void handle(SelectionKey key) {
+			if(handling)	return;
+			try {
+				if(key.isReadable() && channel.read(in) < 0){
+					close(key);
+					return;
+				}
+				serve();
+			} catch (IOException e) {
+				close(key);
+			}
+		}
+
+		/**
+		 * Back on the event loop from the worker
+		 */
+		void handled() {
+			handling = false;
+			if(!key.isValid())	return;
+			if(failed){
+				close(key);
+				return;
+			}
+			try {
+				serve();
+			} catch (IOException e) {
+				close(key);
+			}
+		}
+
+		/**
+		 * Write what the socket takes, then hand the frames to a worker if a complete one fits into
+		 * the output, otherwise wait for the socket
+		 */
+		private void serve() throws IOException {
+			if(out.position() > 0){
+				out.flip();
+				channel.write(out);
+				out.compact();
+			}
+			if(hasFrame()){
+				handling = true;
+				key.interestOps(0);
+				workers.execute(this::handleRequests);
+				return;
+			}
+			int interest = 0;
+			if(out.position() > 0)	interest |= SelectionKey.OP_WRITE;
+			if(out.remaining() >= MAX_RESPONSE_SIZE && in.hasRemaining())	interest |= SelectionKey.OP_READ;
+			key.interestOps(interest == 0 ? SelectionKey.OP_READ : interest);
+		}
+
+		/**
+		 * @return a complete or a bad frame starts the input, and the output has room for a response
+		 */
+		private boolean hasFrame() {
+			if(in.position() < 4 || out.remaining() < MAX_RESPONSE_SIZE)	return false;
+			int length = in.getInt(0);
+			return length < 1 || length > MAX_FRAME_SIZE || in.position() >= 4 + length;
+		}
+
+		/**
+		 * Run by a worker, a request failing unexpectedly closes the connection
+		 */
+		private void handleRequests() {
+			failed = true;
+			try {
+				failed = !handleFrames();
+			} finally {
+				eventLoop.handled(this);
+			}
+		}
+
+		/**
+		 * Handle every complete frame of the input that the output has room for
+		 * @return false on a protocol error
+		 */
+		private boolean handleFrames() {
+			in.flip();
+			try {
+				while(in.remaining() >= 4 && out.remaining() >= MAX_RESPONSE_SIZE){
+					int length = in.getInt(in.position());
+					if(length < 1 || length > MAX_FRAME_SIZE)	return false;
+					if(in.remaining() < 4 + length)	break;
+					if(placeBets(in, out))	continue;
+					int limit = in.limit();
+					int end = in.position() + 4 + length;
+					in.position(in.position() + 4);
+					in.limit(end);
+					handleRequest(in, out, coordinator);
+					in.limit(limit);
+					in.position(end);
+				}
+				return true;
+			} finally {
+				in.compact();
+			}
+		}
+	}
+
+	private static void close(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			//closing anyway
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.skybet.roulette;
+
+/**
+ * Phases of a round, in order
+ * @author benny
+ *
+ */
+public enum RoundPhase 
+{
+	/**
+	 * Taking bets
+	 */
+	OPEN,
+	/**
+	 * No more bets, waiting for the spin
+	 */
+	CLOSED,
+	/**
+	 * Winning number drawn, bets waiting to be paid
+	 */
+	SPUN,
+	/**
+	 * All bets paid
+	 */
+	SETTLED
+}
@@ -0,0 +1,156 @@
+package com.skybet.roulette;
+
+/**
+ * Result of settling a whole round. Bet IDs and payouts of the winning bets are stored in 
+ * parallel arrays, i.e. getPayouts()[i] is the payout of getBetIds()[i]. Losing bets are only counted.
+ * Bets placed for a player are also summed up by player, in parallel arrays as well: the credit list
+ * of the round for the wallet, one entry per player instead of one per bet. Bets of the round paid one
+ * by one with pay() before settling are in it as well.
+ * Payouts are in minor units of the currency.
+ * A settlement is immutable, so one instance is shared by every subscriber of the settlements: the array
+ * getters return copies, the indexed getters read in place.
+ * @author benny
+ *
+ */
+public class RoundSettlement 
+{
+	private final long round;
+	private final int winningNumber;
+	private final int[] betIds;
+	private final long[] payouts;
+	private final int noOfLosingBets;
+	private final int[] playerIds;
+	private final long[] playerStakes;
+	private final long[] playerPayouts;
+	
+	public RoundSettlement(long round, int winningNumber, int[] betIds, long[] payouts, int noOfLosingBets){
+		this(round, winningNumber, betIds, payouts, noOfLosingBets, new int[0], new long[0], new long[0]);
+	}
+	
+	/**
+	 * The arrays are taken over, not copied: they must not be changed afterwards
+	 */
+	public RoundSettlement(long round, int winningNumber, int[] betIds, long[] payouts, int noOfLosingBets,
+			int[] playerIds, long[] playerStakes, long[] playerPayouts){
+		this.round = round;
+		this.winningNumber = winningNumber;
+		this.betIds = betIds;
+		this.payouts = payouts;
+		this.noOfLosingBets = noOfLosingBets;
+		this.playerIds = playerIds;
+		this.playerStakes = playerStakes;
+		this.playerPayouts = playerPayouts;
+	}
+
+	/**
+	 * @return number of the settled round
+	 */
+	public long getRound() {
+		return round;
+	}
+
+	public int getWinningNumber() {
+		return winningNumber;
+	}
+
+	public int[] getBetIds() {
+		return betIds.clone();
+	}
+
+	public long[] getPayouts() {
+		return payouts.clone();
+	}
+
+	/**
+	 * @param index index of the winning bet, below size()
+	 */
+	public int getBetId(int index) {
+		return betIds[index];
+	}
+
+	/**
+	 * @param index index of the winning bet, below size()
+	 */
+	public long getPayout(int index) {
+		return payouts[index];
+	}
+	
+	/**
+	 * @return number of winning bets
+	 */
+	public int size() {
+		return betIds.length;
+	}
+	
+	public int getNoOfLosingBets() {
+		return noOfLosingBets;
+	}
+	
+	/**
+	 * @return players with bets settled in this round, including bets paid one by one with pay()
+	 */
+	public int[] getPlayerIds() {
+		return playerIds.clone();
+	}
+	
+	/**
+	 * @return sum of the bet amounts of each player of getPlayerIds()
+	 */
+	public long[] getPlayerStakes() {
+		return playerStakes.clone();
+	}
+	
+	/**
+	 * @return sum credited to each player of getPlayerIds(), 0 if all bets lost
+	 */
+	public long[] getPlayerPayouts() {
+		return playerPayouts.clone();
+	}
+	
+	/**
+	 * @return number of players with bets settled in this round
+	 */
+	public int getNoOfPlayers() {
+		return playerIds.length;
+	}
+	
+	/**
+	 * @param index index of the player, below getNoOfPlayers()
+	 */
+	public int getPlayerId(int index) {
+		return playerIds[index];
+	}
+	
+	/**
+	 * @param index index of the player, below getNoOfPlayers()
+	 */
+	public long getPlayerStake(int index) {
+		return playerStakes[index];
+	}
+	
+	/**
+	 * @param index index of the player, below getNoOfPlayers()
+	 */
+	public long getPlayerPayout(int index) {
+		return playerPayouts[index];
+	}
+	
+	/**
+	 * @param index index of the player in getPlayerIds()
+	 * @return net win of the player for the round, negative for a loss
+	 */
+	public long getPlayerNet(int index) {
+		return playerPayouts[index] - playerStakes[index];
+	}
+	
+	/**
+	 * @return total sum of money return from the table for this round, in minor units
+	 */
+	public long getTotalPayout() {
+		long total = 0;
+		for(long payout : payouts){
+			total += payout;
+		}
+		return total;
+	}
+}
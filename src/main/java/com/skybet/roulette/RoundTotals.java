@@ -0,0 +1,71 @@
+package com.skybet.roulette;
+
+/**
+ * Totals of a settled round, without the bets: what a shard of a sharded wheel reports to
+ * its coordinator, and what the coordinator adds up over all shards.
+ * Payouts are in minor units of the currency.
+ * @author benny
+ *
+ */
+public class RoundTotals
+{
+	private final long round;
+	private final int winningNumber;
+	private final long totalPayout;
+	private final int noOfWinningBets;
+	private final int noOfLosingBets;
+
+	public RoundTotals(long round, int winningNumber, long totalPayout, int noOfWinningBets, int noOfLosingBets){
+		this.round = round;
+		this.winningNumber = winningNumber;
+		this.totalPayout = totalPayout;
+		this.noOfWinningBets = noOfWinningBets;
+		this.noOfLosingBets = noOfLosingBets;
+	}
+
+	/**
+	 * @return number of the settled round
+	 */
+	public long getRound() {
+		return round;
+	}
+
+	public int getWinningNumber() {
+		return winningNumber;
+	}
+
+	/**
+	 * @return total sum of money return from the table for this round
+	 */
+	public long getTotalPayout() {
+		return totalPayout;
+	}
+
+	public int getNoOfWinningBets() {
+		return noOfWinningBets;
+	}
+
+	public int getNoOfLosingBets() {
+		return noOfLosingBets;
+	}
+
+	/**
+	 * @param other totals of the same round on another shard
+	 * @return sum of both
+	 * @throws IllegalStateException the shards settled different rounds or numbers
+	 */
+	public RoundTotals add(RoundTotals other) {
+		if(other.round != round || other.winningNumber != winningNumber){
+			throw new IllegalStateException("Shards out of step: round " + round + " number " + winningNumber 
+					+ ", round " + other.round + " number " + other.winningNumber);
+		}
+		return new RoundTotals(round, winningNumber, totalPayout + other.totalPayout, 
+				noOfWinningBets + other.noOfWinningBets, noOfLosingBets + other.noOfLosingBets);
+	}
+
+	@Override
+	public String toString() {
+		return "Round " + round + ": " + winningNumber + ", paid out " + totalPayout + " on " + noOfWinningBets 
+				+ " bets, " + noOfLosingBets + " lost";
+	}
+}
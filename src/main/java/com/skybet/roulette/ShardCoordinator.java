@@ -0,0 +1,264 @@
+package com.skybet.roulette;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Coordinator of a wheel sharded over several RouletteServer processes. Bets are split by bet ID,
+ * every shard holds the bets of its IDs in its own Roulette, so the duplicated bet ID check stays
+ * within a shard and the intake grows with the shards. The coordinator owns the spin: it closes
+ * betting on every shard, draws the number once and spins every shard to it. It adds up the
+ * settlement totals and the liabilities of the shards.
+ * Bet payouts are settled on each shard, e.g. by its own settlement stream.
+ * The coordinator connects to the coordinator address of every shard: only there are its requests taken.
+ * <p>
+ * The rounds of all shards are checked when closing betting, before any shard is spun. A spin can still
+ * fail part way, e.g. a shard not reachable: betting stays closed on every shard and the drawn number
+ * is kept pending. Calling spin() again resumes that spin: it asks the shards not known to be spun for their
+ * last spin, reconnecting to those whose connection failed, and spins those not spun to the round yet to
+ * the same number. The round cannot be settled until every shard is spun.
+ * A settlement failing part way is resumed the same way: the totals of the shards settled already are kept,
+ * and calling settleRound() again only settles the others. A shard settling a round again answers the totals
+ * of its first settlement, so a shard that settled before its connection failed is not counted as empty.
+ * @author benny
+ *
+ */
+public class ShardCoordinator implements AutoCloseable
+{
+	private final List<InetSocketAddress> shardAddresses;
+	private final RouletteClient[] shards;
+	private final int noOfNumbers;
+	private volatile RandomSource randomSource = RandomSource.random();
+	/**
+	 * Shards without unpaid bets settle by themselves, so the coordinator keeps track of the round
+	 * to keep every shard on the same one
+	 */
+	private boolean spunRoundSettled = true;
+	/**
+	 * Winning number of a spin not applied to every shard yet, -1 if none
+	 */
+	private int pendingNumber = -1;
+	/**
+	 * Round of the pending spin
+	 */
+	private long pendingRound;
+	/**
+	 * Shards spun to the pending number
+	 */
+	private final boolean[] spun;
+	/**
+	 * Totals of the shards that settled the spun round, null for those not settled yet
+	 */
+	private final RoundTotals[] settled;
+	/**
+	 * Shards whose connection failed while settling, reconnected before settling again
+	 */
+	private final boolean[] disconnected;
+
+	/**
+	 * @param shardAddresses coordinator address of each shard, see RouletteServer, in the same order for every 
+	 * coordinator and bet router
+	 * @param noOfNumbers numbers on the wheel of every shard
+	 * @throws IOException a shard cannot be reached
+	 */
+	public ShardCoordinator(List<InetSocketAddress> shardAddresses, int noOfNumbers) throws IOException {
+		this.noOfNumbers = noOfNumbers;
+		this.shardAddresses = new ArrayList<InetSocketAddress>(shardAddresses);
+		this.shards = new RouletteClient[shardAddresses.size()];
+		this.spun = new boolean[shards.length];
+		this.settled = new RoundTotals[shards.length];
+		this.disconnected = new boolean[shards.length];
+		try {
+			for(int i=0; i<shards.length; i++){
+				shards[i] = new RouletteClient(shardAddresses.get(i));
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param betId
+	 * @param noOfShards
+	 * @return index of the shard taking the bet ID
+	 */
+	public static int shardOf(int betId, int noOfShards) {
+		int h = betId * 0x9E3779B9;
+		return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % noOfShards;
+	}
+
+	/**
+	 * @param betId
+	 * @return connection to the shard taking the bet ID
+	 */
+	public RouletteClient shardFor(int betId) {
+		return shards[shardOf(betId, shards.length)];
+	}
+
+	/**
+	 * @param shard index of the shard
+	 * @return connection to the shard, replaced when a spin resumed after it failed
+	 */
+	public RouletteClient getShard(int shard) {
+		return shards[shard];
+	}
+
+	public int getNoOfShards() {
+		return shards.length;
+	}
+
+	/**
+	 * Change where the winning numbers come from. java.util.Random by default.
+	 * @param randomSource
+	 */
+	public void setRandomSource(RandomSource randomSource) {
+		this.randomSource = randomSource;
+	}
+
+	/**
+	 * Close betting on every shard, then draw the winning number and spin every shard to it.
+	 * After a spin failed part way, resume it instead: the shards not spun yet are spun to the same number.
+	 * @return winning number
+	 * @throws IOException a shard failed, nothing spun if betting was not closed on every shard yet,
+	 * otherwise the spin is pending
+	 * @throws IllegalStateException the previous round is not settled yet, shards are on different rounds
+	 * (nothing spun), or a shard refused the spin (pending)
+	 */
+	public synchronized int spin() throws IOException {
+		if(pendingNumber >= 0){
+			for(int i=0; i<shards.length; i++){
+				if(!spun[i]){
+					//the spin may have been taken before the connection failed
+					SpinResult spinResult;
+					try {
+						spinResult = shards[i].getSpinResult();
+					} catch (IOException e) {
+						reconnect(i);
+						spinResult = shards[i].getSpinResult();
+					}
+					spun[i] = spinResult != null && spinResult.getRound() == pendingRound;
+				}
+			}
+			return spinPending();
+		}
+		if(!spunRoundSettled){
+			throw new IllegalStateException("Previous round is not settled yet");
+		}
+		long round = -1;
+		for(RouletteClient shard : shards){
+			long shardRound = shard.closeBetting();
+			if(round >= 0 && shardRound != round){
+				throw new IllegalStateException("Shards out of step: rounds " + round + " and " + shardRound);
+			}
+			round = shardRound;
+		}
+		pendingNumber = randomSource.nextInt(noOfNumbers);
+		pendingRound = round;
+		Arrays.fill(spun, false);
+		return spinPending();
+	}
+
+	/**
+	 * Spin the shards not spun yet to the pending number
+	 */
+	private int spinPending() throws IOException {
+		for(int i=0; i<shards.length; i++){
+			if(!spun[i]){
+				long shardRound = shards[i].spinTo(pendingNumber);
+				spun[i] = true;
+				if(shardRound != pendingRound){
+					throw new IllegalStateException("Shard " + i + " spun round " + shardRound + " instead of " + pendingRound);
+				}
+			}
+		}
+		int winningNumber = pendingNumber;
+		pendingNumber = -1;
+		spunRoundSettled = false;
+		Arrays.fill(settled, null);
+		return winningNumber;
+	}
+
+	/**
+	 * Replace the connection to a shard by a new one
+	 */
+	private void reconnect(int shard) throws IOException {
+		shards[shard].close();
+		shards[shard] = new RouletteClient(shardAddresses.get(shard));
+	}
+
+	/**
+	 * Settle the spun round on every shard. After a settlement failed part way, resume it instead: only the 
+	 * shards not settled yet are settled, reconnecting to those whose connection failed.
+	 * @return totals over all shards
+	 * @throws IOException a shard failed, the shards settled meanwhile are kept
+	 * @throws IllegalStateException no round spun yet, a spin is pending, or shards settled different rounds
+	 */
+	public synchronized RoundTotals settleRound() throws IOException {
+		if(pendingNumber >= 0){
+			throw new IllegalStateException("Round " + pendingRound + " is not spun on every shard yet");
+		}
+		for(int i=0; i<shards.length; i++){
+			if(settled[i] == null){
+				if(disconnected[i]){
+					reconnect(i);
+					disconnected[i] = false;
+				}
+				try {
+					settled[i] = shards[i].settleRound();
+				} catch (IOException e) {
+					disconnected[i] = true;
+					throw e;
+				}
+			}
+		}
+		RoundTotals totals = null;
+		for(RoundTotals shardTotals : settled){
+			totals = totals == null ? shardTotals : totals.add(shardTotals);
+		}
+		spunRoundSettled = true;
+		return totals;
+	}
+
+	/**
+	 * @return liability of each number over all shards, in the round taking bets
+	 * @throws IOException
+	 */
+	public long[] getLiabilities() throws IOException {
+		long[] liabilities = new long[noOfNumbers];
+		for(RouletteClient shard : shards){
+			long[] shardLiabilities = shard.getLiabilities();
+			for(int number=0; number<noOfNumbers; number++){
+				liabilities[number] += shardLiabilities[number];
+			}
+		}
+		return liabilities;
+	}
+
+	/**
+	 * @return worst case payout of the round taking bets over all shards. Liabilities are added
+	 * number by number before taking the maximum, the exposure of each shard alone would understate it.
+	 * @throws IOException
+	 */
+	public long getMaxExposure() throws IOException {
+		long max = 0;
+		for(long liability : getLiabilities()){
+			max = Math.max(max, liability);
+		}
+		return max;
+	}
+
+	/**
+	 * Close the connections to the shards, the shards keep running
+	 */
+	public void close() throws IOException {
+		for(RouletteClient shard : shards){
+			if(shard != null){
+				shard.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.skybet.roulette;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo simulation of the return of every bet type of a Roulette, using the same payout 
+ * rules as settlement. Spins run on all cores with fork/join, every task drawing from its own 
+ * split SplittableRandom.
+ * Workers only count how often each number comes up. As the payout of a bet only depends on the 
+ * winning number, the sums of returns and squared returns of every bet are then built from the 
+ * counts, which gives the same estimates as settling every bet on every spin.
+ * @author benny
+ *
+ */
+public class Simulation 
+{
+	/**
+	 * Spins drawn by a single task without splitting further
+	 */
+	private static final long SPINS_PER_TASK = 1 << 22;
+	
+	private final Roulette roulette;
+	private final ForkJoinPool pool;
+	
+	public Simulation(Roulette roulette){
+		this(roulette, ForkJoinPool.commonPool());
+	}
+	
+	public Simulation(Roulette roulette, ForkJoinPool pool){
+		this.roulette = roulette;
+		this.pool = pool;
+	}
+	
+	/**
+	 * Run the simulation with a random seed
+	 * @param noOfSpins
+	 * @return statistics by bet name: outside bet types, then inside bets by size
+	 */
+	public Map<String, BetStatistics> run(long noOfSpins) {
+		return run(noOfSpins, new SplittableRandom().nextLong());
+	}
+	
+	/**
+	 * Run the simulation. The same seed gives the same result whatever the number of threads.
+	 * @param noOfSpins
+	 * @param seed
+	 * @return statistics by bet name: outside bet types, then inside bets by size
+	 */
+	public Map<String, BetStatistics> run(long noOfSpins, long seed) {
+		long[] counts = pool.invoke(new SpinTask(new SplittableRandom(seed), noOfSpins, roulette.getNoOfNumbers()));
+		
+		Map<String, BetStatistics> statistics = new LinkedHashMap<String, BetStatistics>();
+		String[] outsideBetTypes = roulette.getOutsideBetTypes();
+		for(int betKind=0; betKind<outsideBetTypes.length; betKind++){
+			statistics.put(outsideBetTypes[betKind], 
+					getStatistics(outsideBetTypes[betKind], betKind, 0, counts, noOfSpins));
+		}
+		for(long coverage : getInsideBetsBySize()){
+			if(coverage == 0)	continue;
+			String betName = Roulette.INSIDE_BET_NAMES[Long.bitCount(coverage)];
+			statistics.put(betName, getStatistics(betName, Roulette.INSIDE_BET, coverage, counts, noOfSpins));
+		}
+		return statistics;
+	}
+	
+	private BetStatistics getStatistics(String betName, int betKind, long coverage, long[] counts, long noOfSpins) {
+		double sum = 0;
+		double sumOfSquares = 0;
+		for(int number=0; number<counts.length; number++){
+			double payout = roulette.getPayoutMultiplier(betKind, coverage, number);
+			sum += counts[number] * payout;
+			sumOfSquares += counts[number] * payout * payout;
+		}
+		double mean = sum / noOfSpins;
+		double variance = noOfSpins > 1 ? (sumOfSquares - sum * mean) / (noOfSpins - 1) : 0;
+		return new BetStatistics(betName, noOfSpins, mean, variance);
+	}
+	
+	/**
+	 * @return one valid inside bet of each size, 0 for the sizes not available on the layout
+	 */
+	private long[] getInsideBetsBySize() {
+		long[] insideBets = new long[Roulette.INSIDE_BET_NAMES.length];
+		for(long coverage : roulette.getInsideBetLayouts()){
+			int size = Long.bitCount(coverage);
+			if(size < insideBets.length && insideBets[size] == 0){
+				insideBets[size] = coverage;
+			}
+		}
+		return insideBets;
+	}
+	
+	/**
+	 * Count the winning numbers of a number of spins
+	 */
+	private static class SpinTask extends RecursiveTask<long[]> {
+		private static final long serialVersionUID = 1L;
+		private final SplittableRandom rnd;
+		private final long noOfSpins;
+		private final int noOfNumbers;
+		
+		SpinTask(SplittableRandom rnd, long noOfSpins, int noOfNumbers){
+			this.rnd = rnd;
+			this.noOfSpins = noOfSpins;
+			this.noOfNumbers = noOfNumbers;
+		}
+		
+		protected long[] compute() {
+			if(noOfSpins > SPINS_PER_TASK){
+				long half = noOfSpins / 2;
+				SpinTask left = new SpinTask(rnd.split(), half, noOfNumbers);
+				SpinTask right = new SpinTask(rnd.split(), noOfSpins - half, noOfNumbers);
+				left.fork();
+				long[] counts = right.compute();
+				long[] leftCounts = left.join();
+				for(int number=0; number<noOfNumbers; number++){
+					counts[number] += leftCounts[number];
+				}
+				return counts;
+			}
+			int[] counts = new int[noOfNumbers];
+			for(long i=0; i<noOfSpins; i++){
+				counts[rnd.nextInt(noOfNumbers)]++;
+			}
+			return Arrays.stream(counts).asLongStream().toArray();
+		}
+	}
+}
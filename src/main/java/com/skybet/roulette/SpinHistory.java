@@ -0,0 +1,152 @@
+package com.skybet.roulette;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rolling window of the last winning numbers of a wheel, kept off heap in a ring buffer of one
+ * byte per spin. The count of each number in the window and the chi-square statistic of the counts
+ * against a fair wheel are updated on every spin, so monitoring never rescans the history.
+ * Queries fill arrays given by the caller and do not allocate.
+ * @author benny
+ *
+ */
+public class SpinHistory
+{
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final ByteBuffer ring;
+	private final int capacity;
+	private final int[] counts;
+	private int head;
+	private int size;
+	private long noOfSpins;
+	/**
+	 * Sum of the squared counts, the chi-square statistic is derived from it
+	 */
+	private long sumOfSquares;
+
+	/**
+	 * @param noOfNumbers numbers on the wheel
+	 * @param capacity spins kept in the window
+	 */
+	public SpinHistory(int noOfNumbers, int capacity){
+		if(noOfNumbers > Roulette.MAX_TOTAL){
+			throw new IllegalArgumentException("Number of numbers must be up to " + Roulette.MAX_TOTAL);
+		}
+		this.ring = ByteBuffer.allocateDirect(capacity);
+		this.capacity = capacity;
+		this.counts = new int[noOfNumbers];
+	}
+
+	/**
+	 * Add a winning number, dropping the oldest one once the window is full
+	 * @param number
+	 */
+	public synchronized void record(int number) {
+		if(size == capacity){
+			int oldest = ring.get(head);
+			sumOfSquares -= 2 * counts[oldest] - 1;
+			counts[oldest]--;
+		} else {
+			size++;
+		}
+		ring.put(head, (byte) number);
+		head = head + 1 == capacity ? 0 : head + 1;
+		sumOfSquares += 2 * counts[number] + 1;
+		counts[number]++;
+		noOfSpins++;
+	}
+
+	/**
+	 * @return spins in the window
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return spins recorded since the start, including those out of the window
+	 */
+	public synchronized long getNoOfSpins() {
+		return noOfSpins;
+	}
+
+	/**
+	 * @param number
+	 * @return times the number came up in the window
+	 */
+	public synchronized int getCount(int number) {
+		return counts[number];
+	}
+
+	/**
+	 * Pearson's chi-square statistic of the counts in the window against the same expected count
+	 * for every number: sum((count - n/k)^2 / (n/k)) = k/n * sum(count^2) - n
+	 * @return 0 if no spins yet
+	 */
+	public synchronized double getChiSquare() {
+		if(size == 0)	return 0;
+		return (double) counts.length * sumOfSquares / size - size;
+	}
+
+	/**
+	 * @return degrees of freedom of the chi-square statistic
+	 */
+	public int getDegreesOfFreedom() {
+		return counts.length - 1;
+	}
+
+	/**
+	 * @param into filled with the last winning numbers, most recent first
+	 * @return numbers filled, less than into.length if fewer spins in the window
+	 */
+	public synchronized int getLast(int[] into) {
+		int n = Math.min(into.length, size);
+		int position = head;
+		for(int i=0; i<n; i++){
+			position = position == 0 ? capacity - 1 : position - 1;
+			into[i] = ring.get(position);
+		}
+		return n;
+	}
+
+	/**
+	 * @param into filled with the numbers that came up most in the window, most first
+	 * @return numbers filled
+	 */
+	public synchronized int getHotNumbers(int[] into) {
+		return rank(into, true);
+	}
+
+	/**
+	 * @param into filled with the numbers that came up least in the window, least first
+	 * @return numbers filled
+	 */
+	public synchronized int getColdNumbers(int[] into) {
+		return rank(into, false);
+	}
+
+	/**
+	 * Selection by count, ties going to the lower number
+	 */
+	private int rank(int[] into, boolean hottest) {
+		int n = Math.min(into.length, counts.length);
+		long ranked = 0;
+		for(int i=0; i<n; i++){
+			int best = -1;
+			for(int number=0; number<counts.length; number++){
+				if((ranked & (1L << number)) != 0)	continue;
+				if(best < 0 || (hottest ? counts[number] > counts[best] : counts[number] < counts[best])){
+					best = number;
+				}
+			}
+			into[i] = best;
+			ranked |= 1L << best;
+		}
+		return n;
+	}
+}
@@ -0,0 +1,33 @@
+package com.skybet.roulette;
+
+/**
+ * Winning number of a spun round
+ * @author benny
+ *
+ */
+public class SpinResult
+{
+	private final long round;
+	private final int winningNumber;
+
+	public SpinResult(long round, int winningNumber){
+		this.round = round;
+		this.winningNumber = winningNumber;
+	}
+
+	/**
+	 * @return number of the spun round
+	 */
+	public long getRound() {
+		return round;
+	}
+
+	public int getWinningNumber() {
+		return winningNumber;
+	}
+
+	@Override
+	public String toString() {
+		return "Round " + round + ": " + winningNumber;
+	}
+}
@@ -0,0 +1,232 @@
+package com.skybet.roulette;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bet table split into stripes by bet ID. Every stripe is a BetTable guarded by its own lock, 
+ * so bets with different IDs can be placed and paid in parallel, while the duplicated bet ID 
+ * check stays atomic within the stripe owning the ID.
+ * The table holds the bets of one round. Bets may only be added while it is open, which 
+ * has to be checked under the stripe lock.
+ * The table also keeps the liability of the round: the sum paid out by the table if each number wins.
+ * @author benny
+ *
+ */
+class StripedBetTable
+{
+	private final BetTable[] stripes;
+	private final ReentrantLock[] locks;
+	private final int stripeShift;
+	private final LongAdder noOfBets = new LongAdder();
+	private volatile boolean open = true;
+	private volatile int winningNumber = -1;
+	/**
+	 * Number of times the table was reopened, tells apart the rounds held by the table in turn
+	 */
+	private volatile long epoch;
+	private final RouletteMetrics metrics;
+	/**
+	 * Liability of each number, in minor units
+	 */
+	private final AtomicLongArray liabilities;
+	
+	public StripedBetTable(int noOfNumbers, int noOfStripes, RouletteMetrics metrics){
+		this(noOfNumbers, noOfStripes, metrics, false);
+	}
+	
+	/**
+	 * @param noOfNumbers numbers on the wheel
+	 * @param noOfStripes rounded up to a power of two
+	 * @param metrics records the time spent waiting for contended stripes
+	 * @param offHeap keep the bets out of the heap, see BetTable
+	 */
+	public StripedBetTable(int noOfNumbers, int noOfStripes, RouletteMetrics metrics, boolean offHeap){
+		this.metrics = metrics;
+		this.liabilities = new AtomicLongArray(noOfNumbers);
+		int stripeBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, noOfStripes) - 1);
+		this.stripes = new BetTable[1 << stripeBits];
+		this.locks = new ReentrantLock[1 << stripeBits];
+		for(int i=0; i<stripes.length; i++){
+			stripes[i] = new BetTable(noOfNumbers, 0, offHeap);
+			locks[i] = new ReentrantLock();
+		}
+		this.stripeShift = 32 - stripeBits;
+	}
+	
+	/**
+	 * @return default number of stripes for this machine
+	 */
+	public static int defaultNoOfStripes() {
+		return Runtime.getRuntime().availableProcessors() * 4;
+	}
+	
+	public int getNoOfStripes() {
+		return stripes.length;
+	}
+	
+	/**
+	 * @param betId
+	 * @return stripe owning the bet ID
+	 */
+	public int stripeOf(int betId) {
+		if(stripeShift == 32)	return 0;
+		int h = betId * 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		return h >>> stripeShift;
+	}
+	
+	/**
+	 * Lock the stripe. Must be followed by unlockStripe(stripe) in a finally block.
+	 * @param stripe
+	 * @return bet table of the stripe, only to be used while the lock is held
+	 */
+	public BetTable lockStripe(int stripe) {
+		ReentrantLock lock = locks[stripe];
+		if(!lock.tryLock()){
+			long start = System.nanoTime();
+			lock.lock();
+			metrics.recordLockWait(System.nanoTime() - start);
+		}
+		return stripes[stripe];
+	}
+	
+	public void unlockStripe(int stripe) {
+		locks[stripe].unlock();
+	}
+
+	/**
+	 * Lock every stripe, one after the other, to stop bets being added or removed.
+	 * Must be followed by unlockAll() in a finally block.
+	 */
+	public void lockAll() {
+		for(int stripe=0; stripe<stripes.length; stripe++){
+			lockStripe(stripe);
+		}
+	}
+
+	public void unlockAll() {
+		for(int stripe=stripes.length-1; stripe>=0; stripe--){
+			unlockStripe(stripe);
+		}
+	}
+	
+	/**
+	 * Count the bets added to a stripe, to be called under the stripe lock
+	 * @param count
+	 */
+	public void added(int count) {
+		noOfBets.add(count);
+	}
+	
+	/**
+	 * Count the bets removed from a stripe, to be called under the stripe lock
+	 * @param count
+	 */
+	public void removed(int count) {
+		noOfBets.add(-count);
+	}
+	
+	/**
+	 * @return number of bets over all stripes. Not a snapshot while bets are being placed.
+	 */
+	public int size() {
+		return noOfBets.intValue();
+	}
+	
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	
+	public boolean isOpen() {
+		return open;
+	}
+	
+	/**
+	 * Stop taking bets. Once returned, no bet is being added by any thread.
+	 */
+	public void close() {
+		open = false;
+		for(int stripe=0; stripe<stripes.length; stripe++){
+			lockStripe(stripe);
+			unlockStripe(stripe);
+		}
+	}
+	
+	/**
+	 * Start taking bets of a new round. The table must be empty.
+	 */
+	public void reopen() {
+		winningNumber = -1;
+		epoch++;
+		open = true;
+	}
+	
+	/**
+	 * @return number of times the table was reopened, changed by every round it takes
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+	
+	/**
+	 * Add to the liability of a number, unless it would go over the limit
+	 * @param number
+	 * @param payout paid out by the bet if the number wins
+	 * @param limit maximum liability of a number
+	 * @return false if not added as the limit would be exceeded
+	 */
+	public boolean addLiability(int number, long payout, long limit) {
+		while(true){
+			long current = liabilities.get(number);
+			if(payout > limit - current)	return false;
+			if(liabilities.compareAndSet(number, current, current + payout))	return true;
+		}
+	}
+	
+	/**
+	 * @param number
+	 * @param payout paid out by a bet removed from the table if the number wins
+	 */
+	public void subtractLiability(int number, long payout) {
+		liabilities.addAndGet(number, -payout);
+	}
+	
+	/**
+	 * @param number
+	 * @return sum paid out if the number wins
+	 */
+	public long getLiability(int number) {
+		return liabilities.get(number);
+	}
+	
+	/**
+	 * @return highest liability of all numbers
+	 */
+	public long getMaxLiability() {
+		long max = 0;
+		for(int number=0; number<liabilities.length(); number++){
+			max = Math.max(max, getLiability(number));
+		}
+		return max;
+	}
+	
+	public void clearLiabilities() {
+		for(int number=0; number<liabilities.length(); number++){
+			liabilities.set(number, 0);
+		}
+	}
+	
+	/**
+	 * @return winning number of the round, -1 if not spun yet
+	 */
+	public int getWinningNumber() {
+		return winningNumber;
+	}
+	
+	public void setWinningNumber(int winningNumber) {
+		this.winningNumber = winningNumber;
+	}
+}
@@ -0,0 +1,181 @@
+package com.skybet.roulette;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hosts many Roulette tables on shared threads. One scheduler thread times the spin cycle
+ * of every table, the spins and settlements themselves run on a shared worker executor.
+ * Bets are routed to the tables by table ID.
+ * @author benny
+ *
+ */
+public class TableHost
+{
+	/**
+	 * Hosted tables take bets from fewer threads each, so they get fewer stripes to keep memory low
+	 */
+	public static final int DEFAULT_STRIPES_PER_TABLE = 4;
+
+	/**
+	 * Called after every timed spin cycle of a table
+	 */
+	public interface SettlementListener {
+		void settled(int tableId, RoundSettlement settlement);
+	}
+
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService workers;
+	private final ConcurrentHashMap<Integer, HostedTable> tables = new ConcurrentHashMap<Integer, HostedTable>();
+	private volatile SettlementListener settlementListener;
+
+	/**
+	 * Host with a single scheduler thread and a work stealing pool sized to the machine
+	 */
+	public TableHost(){
+		this(Executors.newSingleThreadScheduledExecutor(), new ForkJoinPool());
+	}
+
+	/**
+	 * @param scheduler times the spin cycles, tasks are only handed over to the workers
+	 * @param workers runs spins and settlements, e.g. a virtual thread per task executor where available
+	 */
+	public TableHost(ScheduledExecutorService scheduler, ExecutorService workers){
+		this.scheduler = scheduler;
+		this.workers = workers;
+	}
+
+	public void setSettlementListener(SettlementListener settlementListener) {
+		this.settlementListener = settlementListener;
+	}
+
+	/**
+	 * Create a table and start its spin cycle. Every cycle spins the wheel and settles the round.
+	 * @param tableId
+	 * @param noOfNumbers numbers on the wheel, e.g. Roulette.EUROPEAN_TOTAL
+	 * @param spinInterval time between two spins
+	 * @param unit unit of spinInterval
+	 * @return the new table
+	 * @throws IllegalArgumentException table ID already taken
+	 */
+	public Roulette registerTable(int tableId, int noOfNumbers, long spinInterval, TimeUnit unit) {
+		return registerTable(tableId, new Roulette(noOfNumbers, DEFAULT_STRIPES_PER_TABLE), spinInterval, unit);
+	}
+
+	/**
+	 * Start the spin cycle of an existing table
+	 * @param tableId
+	 * @param roulette
+	 * @param spinInterval time between two spins
+	 * @param unit unit of spinInterval
+	 * @return the table
+	 * @throws IllegalArgumentException table ID already taken
+	 */
+	public Roulette registerTable(int tableId, Roulette roulette, long spinInterval, TimeUnit unit) {
+		HostedTable table = new HostedTable(tableId, roulette);
+		if(tables.putIfAbsent(tableId, table) != null){
+			throw new IllegalArgumentException("Table " + tableId + " already registered");
+		}
+		table.cycle = scheduler.scheduleAtFixedRate(() -> {
+			if(table.cycleRunning.compareAndSet(false, true)){
+				workers.execute(table);
+			}
+		}, spinInterval, spinInterval, unit);
+		return roulette;
+	}
+
+	/**
+	 * Stop the spin cycle of the table and stop routing bets to it
+	 * @param tableId
+	 * @return the removed table, null if not found
+	 */
+	public Roulette unregisterTable(int tableId) {
+		HostedTable table = tables.remove(tableId);
+		if(table == null)	return null;
+		table.cycle.cancel(false);
+		return table.roulette;
+	}
+
+	/**
+	 * @param tableId
+	 * @return the table, null if not found
+	 */
+	public Roulette getTable(int tableId) {
+		HostedTable table = tables.get(tableId);
+		return table == null ? null : table.roulette;
+	}
+
+	public int getNoOfTables() {
+		return tables.size();
+	}
+
+	/**
+	 * Place an outside bet on the given table
+	 * @return true if bet successfully placed, false if the table is not found or the bet is refused
+	 * @throws Exception Duplicated betId
+	 * @see Roulette#placeBet(int, String, long)
+	 */
+	public boolean placeBet(int tableId, int betId, String betType, long betAmount) throws Exception {
+		Roulette roulette = getTable(tableId);
+		return roulette != null && roulette.placeBet(betId, betType, betAmount);
+	}
+
+	/**
+	 * Place an inside bet on the given table
+	 * @return true if bet successfully placed, false if the table is not found or the bet is refused
+	 * @throws Exception Duplicated betId
+	 * @see Roulette#placeBet(int, int[], long)
+	 */
+	public boolean placeBet(int tableId, int betId, int[] insideBets, long betAmount) throws Exception {
+		Roulette roulette = getTable(tableId);
+		return roulette != null && roulette.placeBet(betId, insideBets, betAmount);
+	}
+
+	/**
+	 * Stop all spin cycles and the threads of the host
+	 */
+	public void shutdown() {
+		scheduler.shutdownNow();
+		workers.shutdown();
+		tables.clear();
+	}
+
+	/**
+	 * A table with its spin cycle. Running the table spins and settles one round.
+	 */
+	private class HostedTable implements Runnable {
+		private final int tableId;
+		private final Roulette roulette;
+		/**
+		 * Skips a cycle while the previous one is still running
+		 */
+		private final AtomicBoolean cycleRunning = new AtomicBoolean();
+		private volatile ScheduledFuture<?> cycle;
+
+		HostedTable(int tableId, Roulette roulette){
+			this.tableId = tableId;
+			this.roulette = roulette;
+		}
+
+		public void run() {
+			try {
+				roulette.spin();
+				RoundSettlement settlement = roulette.settleRound();
+				SettlementListener listener = settlementListener;
+				if(listener != null){
+					listener.settled(tableId, settlement);
+				}
+			} catch (IllegalStateException e) {
+				//round spun outside the host and not settled yet, try again next cycle
+			} finally {
+				cycleRunning.set(false);
+			}
+		}
+	}
+}
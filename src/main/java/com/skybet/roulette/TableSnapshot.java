@@ -0,0 +1,242 @@
+package com.skybet.roulette;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of the state of a Roulette: position of its journal, round, winning numbers,
+ * table limit, the bets of both bet tables, the player totals of the bets paid already and the spin 
+ * history window. Bets are fixed size records written
+ * back to back, so a snapshot is written with a single write and read with a single mapping.
+ * A CRC32 of everything before it ends the file.
+ * Layout: header (magic, version, number of numbers), round state, bets of the table taking bets,
+ * bets of the spun table, paid player totals, spin history, checksum. A bet table is its bet count followed by its bets.
+ * @author benny
+ *
+ */
+class TableSnapshot
+{
+	/**
+	 * Receives the bets of a bet table of the snapshot
+	 */
+	interface BetHandler {
+		void bet(int betId, int playerId, int betKind, long coverage, long betAmount);
+	}
+
+	private static final int MAGIC = 0x52534E50;
+	private static final int VERSION = 4;
+	private static final int HEADER_SIZE = 12;
+	/**
+	 * betId, playerId, betKind, coverage, betAmount
+	 */
+	private static final int BET_SIZE = 4 + 4 + 1 + 8 + 8;
+	private static final int INITIAL_CAPACITY = 1 << 16;
+
+	private ByteBuffer buffer;
+
+	private TableSnapshot(ByteBuffer buffer){
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Start writing a snapshot
+	 * @param noOfNumbers numbers on the wheel
+	 * @return snapshot to put the state into, in the order of the layout
+	 */
+	static TableSnapshot create(int noOfNumbers) {
+		TableSnapshot snapshot = new TableSnapshot(ByteBuffer.allocateDirect(INITIAL_CAPACITY));
+		snapshot.buffer.putInt(MAGIC).putInt(VERSION).putInt(noOfNumbers);
+		return snapshot;
+	}
+
+	/**
+	 * Map a snapshot and check its header and checksum
+	 * @param file
+	 * @param noOfNumbers numbers on the wheel restoring the snapshot
+	 * @return snapshot positioned after the header
+	 * @throws IOException not a snapshot, of another version or wheel, or corrupted
+	 */
+	static TableSnapshot read(File file, int noOfNumbers) throws IOException {
+		MappedByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			if(channel.size() < HEADER_SIZE + Long.BYTES || channel.size() > Integer.MAX_VALUE){
+				throw new IOException("Not a table snapshot: " + file);
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if(buffer.getInt(0) != MAGIC){
+			throw new IOException("Not a table snapshot: " + file);
+		}
+		if(buffer.getInt(4) != VERSION){
+			throw new IOException("Unsupported table snapshot version " + buffer.getInt(4) + ": " + file);
+		}
+		if(buffer.getInt(8) != noOfNumbers){
+			throw new IOException("Table snapshot of a wheel of " + buffer.getInt(8) + " numbers: " + file);
+		}
+		int end = buffer.limit() - Long.BYTES;
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate().limit(end));
+		if(crc.getValue() != buffer.getLong(end)){
+			throw new IOException("Corrupted table snapshot: " + file);
+		}
+		buffer.position(HEADER_SIZE).limit(end);
+		return new TableSnapshot(buffer);
+	}
+
+	void putLong(long value) {
+		ensureCapacity(Long.BYTES).putLong(value);
+	}
+
+	void putInt(int value) {
+		ensureCapacity(Integer.BYTES).putInt(value);
+	}
+
+	void putBoolean(boolean value) {
+		ensureCapacity(1).put((byte) (value ? 1 : 0));
+	}
+
+	long getLong() {
+		return buffer.getLong();
+	}
+
+	int getInt() {
+		return buffer.getInt();
+	}
+
+	boolean getBoolean() {
+		return buffer.get() != 0;
+	}
+
+	/**
+	 * Put the bets of a table, one stripe at a time under its lock. Bets keep being placed and paid
+	 * on the other stripes meanwhile, so every bet is either in the snapshot or not,
+	 * as if placed or paid after it.
+	 * @param bets
+	 */
+	void putBets(StripedBetTable bets) {
+		int countPosition = buffer.position();
+		putInt(0);
+		int count = 0;
+		for(int stripe=0; stripe<bets.getNoOfStripes(); stripe++){
+			BetTable table = bets.lockStripe(stripe);
+			try {
+				ensureCapacity(table.size() * BET_SIZE);
+				count += table.forEach((betId, playerId, betKind, coverage, betAmount) ->
+						buffer.putInt(betId).putInt(playerId).put((byte) betKind).putLong(coverage).putLong(betAmount));
+			} finally {
+				bets.unlockStripe(stripe);
+			}
+		}
+		buffer.putInt(countPosition, count);
+	}
+
+	/**
+	 * @param handler receives every bet of the next bet table of the snapshot
+	 * @return number of bets
+	 */
+	int getBets(BetHandler handler) {
+		int count = buffer.getInt();
+		for(int i=0; i<count; i++){
+			handler.bet(buffer.getInt(), buffer.getInt(), buffer.get(), buffer.getLong(), buffer.getLong());
+		}
+		return count;
+	}
+
+	/**
+	 * Put the stakes and payouts of every player: player count followed by playerId, stake, payout
+	 * @param totals
+	 */
+	void putPlayerTotals(PlayerTotals totals) {
+		int[] playerIds = totals.getPlayerIds();
+		long[] stakes = totals.getStakes();
+		long[] payouts = totals.getPayouts();
+		putInt(playerIds.length);
+		ensureCapacity(playerIds.length * (4 + 8 + 8));
+		for(int i=0; i<playerIds.length; i++){
+			buffer.putInt(playerIds[i]).putLong(stakes[i]).putLong(payouts[i]);
+		}
+	}
+
+	/**
+	 * Add the player totals of the snapshot to the given ones
+	 * @param totals
+	 */
+	void getPlayerTotals(PlayerTotals totals) {
+		int count = buffer.getInt();
+		for(int i=0; i<count; i++){
+			totals.add(buffer.getInt(), buffer.getLong(), buffer.getLong());
+		}
+	}
+
+	/**
+	 * Put the winning numbers in the window of the history, oldest first
+	 * @param spinHistory
+	 */
+	void putSpinHistory(SpinHistory spinHistory) {
+		int[] numbers = new int[spinHistory.size()];
+		int size = spinHistory.getLast(numbers);
+		putInt(size);
+		ensureCapacity(size);
+		for(int i=size-1; i>=0; i--){
+			buffer.put((byte) numbers[i]);
+		}
+	}
+
+	/**
+	 * Record the winning numbers of the snapshot into the history
+	 * @param spinHistory
+	 */
+	void getSpinHistory(SpinHistory spinHistory) {
+		int size = buffer.getInt();
+		for(int i=0; i<size; i++){
+			spinHistory.record(buffer.get());
+		}
+	}
+
+	/**
+	 * Write the snapshot with its checksum into a temporary file, force it to disk,
+	 * then move it over the given file. A reader never sees a partial snapshot.
+	 * @param file
+	 * @throws IOException
+	 */
+	void write(File file) throws IOException {
+		ByteBuffer content = buffer.duplicate().flip();
+		CRC32 crc = new CRC32();
+		crc.update(content.duplicate());
+		ensureCapacity(Long.BYTES).putLong(crc.getValue());
+		content = buffer.duplicate().flip();
+		File tempFile = new File(file.getPath() + ".tmp");
+		try(FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+			while(content.hasRemaining()){
+				channel.write(content);
+			}
+			channel.force(true);
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return buffer with room for the given bytes, doubled when full
+	 */
+	private ByteBuffer ensureCapacity(int bytes) {
+		if(buffer.remaining() < bytes){
+			int capacity = buffer.capacity();
+			while(capacity - buffer.position() < bytes){
+				capacity *= 2;
+			}
+			ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+			grown.put(buffer.flip());
+			buffer = grown;
+		}
+		return buffer;
+	}
+}
@@ -0,0 +1,44 @@
+package com.skybet.roulette;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+
+import hr.irb.random.QrbgSecureRandom;
+import org.random.rjgodoy.trng.MH_SecureRandom;
+
+/**
+ * Random sources backed by the true random number generators of the trng jar bundled in libraries.
+ * Kept apart from RandomSource, so the jar is only needed at runtime when these are used.
+ * Both generators are remote and slow, to be used behind a PrefetchedRandomSource.
+ * @author benny
+ *
+ */
+public final class TrngRandomSources 
+{
+	private TrngRandomSources(){
+	}
+	
+	/**
+	 * True random numbers from atmospheric noise of www.random.org
+	 * @return source backed by MH_SecureRandom
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchProviderException
+	 */
+	public static RandomSource randomOrg() throws NoSuchAlgorithmException, NoSuchProviderException {
+		return new JdkRandomSource(new MH_SecureRandom());
+	}
+	
+	/**
+	 * True random numbers from the Quantum Random Bit Generator at random.irb.hr
+	 * @param user user name of the service
+	 * @param password password of the service
+	 * @return source backed by QrbgSecureRandom
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchProviderException
+	 */
+	public static RandomSource qrbg(String user, String password) throws NoSuchAlgorithmException, NoSuchProviderException {
+		System.setProperty(QrbgSecureRandom.USERNAME, user);
+		System.setProperty(QrbgSecureRandom.PASSWORD, password);
+		return new JdkRandomSource(new QrbgSecureRandom());
+	}
+}
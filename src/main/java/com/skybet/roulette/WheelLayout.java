@@ -0,0 +1,323 @@
+package com.skybet.roulette;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Pockets of a wheel variant and which of them each bet covers, as data. Pocket 0 is the single zero,
+ * pockets 1 to 36 are the numbers of the grid, further zeros (00, 000) follow from pocket 37.
+ * New variants are put together with a Builder, as the standard ones are.
+ * A Roulette compiles its layout into flat payout tables when it is created, so every variant
+ * settles at the same speed.
+ * @author benny
+ *
+ */
+public class WheelLayout
+{
+	public static final int GRID_SIZE = 36;
+	private static final int DOUBLE_ZERO = GRID_SIZE + 1;
+	private static final int TRIPLE_ZERO = GRID_SIZE + 2;
+	private static final int[] RED_NUMBERS = {
+			1, 3, 5, 7, 9, 12,
+			14, 16, 18, 19, 21, 23,
+			25, 27, 30, 32, 34, 36};
+
+	public static final WheelLayout EUROPEAN = standard("European", GRID_SIZE + 1,
+			new int[][]{{0,1}, {0,2}, {0,3}, {0,1,2}, {0,2,3}, {0,1,2,3}},
+			new int[]{0,1,2,3}, 7);
+
+	public static final WheelLayout AMERICAN = standard("American", GRID_SIZE + 2,
+			new int[][]{{0,1}, {0,2}, {DOUBLE_ZERO,2}, {DOUBLE_ZERO,3}, {0,DOUBLE_ZERO}, {0,1,2}, {0,DOUBLE_ZERO,2},
+					{DOUBLE_ZERO,2,3}, {0,DOUBLE_ZERO,1,2,3}},
+			new int[]{0,DOUBLE_ZERO,1,2,3}, 7);
+
+	public static final WheelLayout TRIPLE_ZERO_LAYOUT = standard("Triple zero", GRID_SIZE + 3,
+			new int[][]{{0,1}, {DOUBLE_ZERO,2}, {TRIPLE_ZERO,3}, {0,DOUBLE_ZERO}, {DOUBLE_ZERO,TRIPLE_ZERO},
+					{0,DOUBLE_ZERO,TRIPLE_ZERO}, {0,DOUBLE_ZERO,TRIPLE_ZERO,1,2,3}},
+			new int[]{0,DOUBLE_ZERO,TRIPLE_ZERO,1,2,3}, 6);
+
+	private final String name;
+	private final int noOfPockets;
+	private final int noOfGridNumbers;
+	private final long zeroPockets;
+	private final long redPockets;
+	private final long[] zeroBets;
+	private final Map<String, Long> outsideBetCoverage;
+	private final Map<String, Long> outsideBetPayouts;
+
+	private WheelLayout(Builder builder){
+		this.name = builder.name;
+		this.noOfPockets = builder.noOfPockets;
+		this.noOfGridNumbers = Math.min(GRID_SIZE, noOfPockets - 1);
+		this.zeroPockets = zeroPocketsOf(noOfPockets);
+		this.redPockets = builder.redPockets;
+		this.zeroBets = builder.zeroBets.stream().mapToLong(Long::longValue).toArray();
+		this.outsideBetCoverage = new LinkedHashMap<String, Long>(builder.outsideBetCoverage);
+		this.outsideBetPayouts = new LinkedHashMap<String, Long>(builder.outsideBetPayouts);
+	}
+
+	/**
+	 * Builds the layout of a wheel variant from its pockets, colours and bets, e.g.
+	 * <pre>
+	 * new WheelLayout.Builder("Mini", 13).redPockets(1, 3, 5, 7, 9, 12).zeroBet(0, 1)
+	 *     .outsideBet("low", 2, 1, 2, 3, 4, 5, 6).outsideBet("high", 2, 7, 8, 9, 10, 11, 12).build();
+	 * </pre>
+	 * The outside bets of the layout are the outside bet types of a Roulette built on it, in the order added.
+	 */
+	public static class Builder {
+		private final String name;
+		private final int noOfPockets;
+		private long redPockets;
+		private final List<Long> zeroBets = new ArrayList<Long>();
+		private final Map<String, Long> outsideBetCoverage = new LinkedHashMap<String, Long>();
+		private final Map<String, Long> outsideBetPayouts = new LinkedHashMap<String, Long>();
+
+		/**
+		 * @param name
+		 * @param noOfPockets pocket 0 is the single zero, 1 to 36 the grid, further zeros from 37
+		 */
+		public Builder(String name, int noOfPockets){
+			if(noOfPockets < 1 || noOfPockets > Roulette.MAX_TOTAL){
+				throw new IllegalArgumentException("Number of numbers must be between 1 and " + Roulette.MAX_TOTAL);
+			}
+			this.name = name;
+			this.noOfPockets = noOfPockets;
+		}
+
+		/**
+		 * @param pockets red pockets, the other grid numbers are black
+		 */
+		public Builder redPockets(int... pockets) {
+			this.redPockets = coverageOf(pockets);
+			return this;
+		}
+
+		/**
+		 * @param pockets an inside bet covering a zero besides its straight up, e.g. 0 and 1. 
+		 * Paid as the inside bets of the grid covering as many numbers, so of 2 up to 6 pockets.
+		 */
+		public Builder zeroBet(int... pockets) {
+			long coverage = coverageOf(pockets);
+			int maxPockets = Roulette.INSIDE_BET_NAMES.length - 1;
+			if(Long.bitCount(coverage) < 2 || Long.bitCount(coverage) > maxPockets){
+				throw new IllegalArgumentException("Zero bet must cover 2 to " + maxPockets + " pockets: " 
+						+ Arrays.toString(pockets));
+			}
+			if((coverage & zeroPocketsOf(noOfPockets)) == 0){
+				throw new IllegalArgumentException("Zero bet covers no zero: " + Arrays.toString(pockets));
+			}
+			zeroBets.add(coverage);
+			return this;
+		}
+
+		/**
+		 * @param betType name of the bet, e.g. red
+		 * @param payout payout of one unit on the bet when it wins, stake included
+		 * @param pockets covered by the bet, at least one
+		 */
+		public Builder outsideBet(String betType, long payout, int... pockets) {
+			if(payout <= 0){
+				throw new IllegalArgumentException("Payout of " + betType + " must be positive");
+			}
+			if(pockets.length == 0){
+				throw new IllegalArgumentException(betType + " covers no pocket");
+			}
+			outsideBetCoverage.put(betType, coverageOf(pockets));
+			outsideBetPayouts.put(betType, payout);
+			return this;
+		}
+
+		public WheelLayout build() {
+			return new WheelLayout(this);
+		}
+
+		private long coverageOf(int... pockets) {
+			for(int pocket : pockets){
+				if(pocket < 0 || pocket >= noOfPockets){
+					throw new IllegalArgumentException("No pocket " + pocket + " on a wheel of " + noOfPockets);
+				}
+			}
+			return WheelLayout.coverageOf(pockets);
+		}
+	}
+
+	/**
+	 * Standard grid and outside bets, with the given zeros. Outside bets covering no pocket of 
+	 * a smaller wheel are left out.
+	 * @param name
+	 * @param noOfPockets
+	 * @param zeroBets inside bets covering a zero, pockets missing on the wheel are left out
+	 * @param basket pockets covered by the basket bet
+	 * @param basketPayout payout of one unit on the basket, stake included
+	 */
+	private static WheelLayout standard(String name, int noOfPockets, int[][] zeroBets, int[] basket, long basketPayout) {
+		Builder builder = new Builder(name, noOfPockets);
+		int noOfGridNumbers = Math.min(GRID_SIZE, noOfPockets - 1);
+		builder.redPockets(Arrays.stream(RED_NUMBERS).filter(number -> number <= noOfGridNumbers).toArray());
+		for(int[] pockets : zeroBets){
+			if(Arrays.stream(pockets).allMatch(pocket -> pocket < noOfPockets)){
+				builder.zeroBet(pockets);
+			}
+		}
+		outsideBet(builder, "low", 2, grid(noOfGridNumbers, number -> number <= 18));
+		outsideBet(builder, "high", 2, grid(noOfGridNumbers, number -> number >= 19));
+		outsideBet(builder, "even", 2, grid(noOfGridNumbers, number -> number%2 == 0));
+		outsideBet(builder, "odd", 2, grid(noOfGridNumbers, number -> number%2 == 1));
+		outsideBet(builder, "red", 2, grid(noOfGridNumbers, number -> Arrays.binarySearch(RED_NUMBERS, number) >= 0));
+		outsideBet(builder, "black", 2, grid(noOfGridNumbers, number -> Arrays.binarySearch(RED_NUMBERS, number) < 0));
+		outsideBet(builder, "dozen1", 3, grid(noOfGridNumbers, number -> number <= 12));
+		outsideBet(builder, "dozen2", 3, grid(noOfGridNumbers, number -> number >= 13 && number <= 24));
+		outsideBet(builder, "dozen3", 3, grid(noOfGridNumbers, number -> number >= 25));
+		outsideBet(builder, "column1", 3, grid(noOfGridNumbers, number -> number%3 == 1));
+		outsideBet(builder, "column2", 3, grid(noOfGridNumbers, number -> number%3 == 2));
+		outsideBet(builder, "column3", 3, grid(noOfGridNumbers, number -> number%3 == 0));
+		outsideBet(builder, "basket", basketPayout, Arrays.stream(basket).filter(pocket -> pocket < noOfPockets).toArray());
+		return builder.build();
+	}
+
+	private static void outsideBet(Builder builder, String betType, long payout, int[] pockets) {
+		if(pockets.length > 0){
+			builder.outsideBet(betType, payout, pockets);
+		}
+	}
+
+	/**
+	 * Layout of a wheel of the given size: European, American or triple zero for 37, 38 or 39 pockets.
+	 * Smaller wheels keep a single zero and part of the grid, bigger ones get more zeros.
+	 * @param noOfPockets
+	 * @return the layout
+	 */
+	public static WheelLayout of(int noOfPockets) {
+		switch (noOfPockets) {
+		case GRID_SIZE + 1:
+			return EUROPEAN;
+		case GRID_SIZE + 2:
+			return AMERICAN;
+		case GRID_SIZE + 3:
+			return TRIPLE_ZERO_LAYOUT;
+		}
+		WheelLayout like = noOfPockets < GRID_SIZE + 1 ? EUROPEAN : TRIPLE_ZERO_LAYOUT;
+		int[][] zeroBets = new int[like.zeroBets.length][];
+		for(int i=0; i<zeroBets.length; i++){
+			zeroBets[i] = pocketsOf(like.zeroBets[i]);
+		}
+		return standard(noOfPockets + " pockets", noOfPockets, zeroBets,
+				pocketsOf(like.getOutsideBetCoverage("basket")), like.getOutsideBetPayout("basket"));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getNoOfPockets() {
+		return noOfPockets;
+	}
+
+	/**
+	 * @return mask of the zero pockets
+	 */
+	public long getZeroPockets() {
+		return zeroPockets;
+	}
+
+	/**
+	 * @return mask of the red pockets
+	 */
+	public long getRedPockets() {
+		return redPockets;
+	}
+
+	/**
+	 * @param pocket
+	 * @return name of the pocket, e.g. 17, 0 or 00
+	 */
+	public String getLabel(int pocket) {
+		if(pocket <= GRID_SIZE)	return String.valueOf(pocket);
+		char[] zeros = new char[pocket - GRID_SIZE + 1];
+		Arrays.fill(zeros, '0');
+		return new String(zeros);
+	}
+
+	/**
+	 * @param betType outside bet type, e.g. red
+	 * @return mask of the pockets covered, 0 if the bet is not offered on this wheel
+	 */
+	public long getOutsideBetCoverage(String betType) {
+		Long coverage = outsideBetCoverage.get(betType);
+		return coverage == null ? 0 : coverage;
+	}
+
+	/**
+	 * @param betType outside bet type, e.g. red
+	 * @return payout of one unit on the bet when it wins, stake included
+	 */
+	public long getOutsideBetPayout(String betType) {
+		Long payout = outsideBetPayouts.get(betType);
+		return payout == null ? 0 : payout;
+	}
+
+	/**
+	 * @return masks of the inside bets covering a zero, besides its straight up
+	 */
+	public long[] getZeroBets() {
+		return zeroBets.clone();
+	}
+
+	/**
+	 * @return outside bets of the wheel, in the order they were added
+	 */
+	public List<String> getOutsideBetTypes() {
+		return new ArrayList<String>(outsideBetCoverage.keySet());
+	}
+
+	/**
+	 * @return number of grid numbers, 1 up to 36
+	 */
+	public int getNoOfGridNumbers() {
+		return noOfGridNumbers;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * @return the grid numbers matching the predicate
+	 */
+	private static int[] grid(int noOfGridNumbers, IntPredicate covered) {
+		return IntStream.rangeClosed(1, noOfGridNumbers).filter(covered).toArray();
+	}
+
+	/**
+	 * @return mask of the single zero and the zeros following the grid
+	 */
+	private static long zeroPocketsOf(int noOfPockets) {
+		long zeroPockets = 1;
+		for(int pocket=GRID_SIZE+1; pocket<noOfPockets; pocket++){
+			zeroPockets |= 1L << pocket;
+		}
+		return zeroPockets;
+	}
+
+	private static long coverageOf(int... pockets) {
+		long coverage = 0;
+		for(int pocket : pockets){
+			coverage |= 1L << pocket;
+		}
+		return coverage;
+	}
+
+	private static int[] pocketsOf(long coverage) {
+		int[] pockets = new int[Long.bitCount(coverage)];
+		for(int i=0; i<pockets.length; i++, coverage &= coverage - 1){
+			pockets[i] = Long.numberOfTrailingZeros(coverage);
+		}
+		return pockets;
+	}
+}
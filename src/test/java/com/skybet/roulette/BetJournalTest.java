@@ -0,0 +1,288 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for BetJournal
+ */
+public class BetJournalTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test records are read back in order after reopening, across segments
+	 * @throws IOException
+	 */
+	@Test
+	public void testReplay() throws IOException{
+		File file = folder.newFile();
+		int noOfBets = 1000;
+		try (BetJournal journal = new BetJournal(file, 4096)) {
+			for(int betId=0; betId<noOfBets; betId++){
+				journal.appendBet(betId, betId % 5, betId % 13, 1L << (betId % 37), betId * 50L);
+			}
+			journal.appendSpin(36);
+			journal.sync(journal.appendPay(7));
+			journal.appendSettle();
+		}
+
+		List<String> records = new ArrayList<String>();
+		try (BetJournal journal = new BetJournal(file)) {
+			long position = journal.getPosition();
+			journal.replay(new RecordCollector(records));
+			assertEquals(noOfBets + 3, records.size());
+			assertEquals("bet 999 4 11 " + (1L << 0) + " 49950", records.get(noOfBets - 1));
+			assertEquals("bet 0 0 0 1 0", records.get(0));
+			assertEquals("spin 36", records.get(noOfBets));
+			assertEquals("pay 7", records.get(noOfBets + 1));
+			assertEquals("settle", records.get(noOfBets + 2));
+
+			//appends go on after the last record
+			journal.sync(journal.appendBet(-1, Roulette.NO_PLAYER, Roulette.INSIDE_BET, 1L << 36, 10));
+			assertTrue(journal.getPosition() > position);
+		}
+		records.clear();
+		try (BetJournal journal = new BetJournal(file)) {
+			journal.replay(new RecordCollector(records));
+			assertEquals("bet -1 0 -1 " + (1L << 36) + " 10", records.get(records.size() - 1));
+		}
+	}
+
+	/**
+	 * Test a crashed table is rebuilt from its journal: open bets, unpaid bets and the last number
+	 * @throws Exception
+	 */
+	@Test
+	public void testRecovery() throws Exception{
+		File file = folder.newFile();
+		int betAmount = 100;
+		BetJournal journal = new BetJournal(file);
+		Roulette roulette = new Roulette();
+		roulette.attachJournal(journal);
+		roulette.setRandomSource(bound -> 8);
+		assertTrue(roulette.placeBet(1, "low", betAmount));
+		assertTrue(roulette.placeBet(2, "high", betAmount));
+		assertTrue(roulette.placeBet(3, new int[]{8,9}, betAmount));
+		roulette.spin();
+		roulette.settleRound();
+		assertTrue(roulette.placeBet(1, "even", betAmount));
+		assertTrue(roulette.placeBet(2, new int[]{8}, betAmount));
+		assertTrue(roulette.placeBet(3, "odd", betAmount));
+		roulette.spin();
+		assertEquals(betAmount*2, roulette.pay(1), 0);
+		assertTrue(roulette.placeBet(4, "red", betAmount));
+		//crash without settling round 2
+
+		Roulette recovered = new Roulette();
+		recovered.attachJournal(new BetJournal(file));
+		assertEquals(8, recovered.getCurrentNumber());
+		assertEquals(3, recovered.getRound());
+		assertEquals(1, recovered.betTable.size());
+		assertEquals(RoundPhase.SPUN, recovered.getPhase(2));
+		assertArrayEquals(new int[]{2}, recovered.getWinningBetIds());
+		try {
+			recovered.pay(1);
+			fail("Bet paid twice");
+		} catch (Exception e) {}
+		assertEquals(betAmount*36, recovered.pay(2), 0);
+		assertEquals(0, recovered.pay(3), 0);
+		try {
+			recovered.placeBet(4, "black", betAmount);
+			fail("Duplicated betId accepted");
+		} catch (Exception e) {}
+	}
+
+	/**
+	 * Test bets placed from many threads are all journaled and recovered
+	 * @throws Exception
+	 */
+	@Test
+	public void testGroupCommit() throws Exception{
+		File file = folder.newFile();
+		int noOfThreads = 8;
+		int betsPerThread = 200;
+		Roulette roulette = new Roulette();
+		roulette.attachJournal(new BetJournal(file));
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i=0; i<noOfThreads; i++){
+			int firstBetId = i * betsPerThread;
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+					for(int betId=firstBetId; betId<firstBetId+betsPerThread; betId++){
+						assertTrue(roulette.placeBet(betId, "red", 1));
+					}
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for(Thread thread : threads){
+			thread.join();
+		}
+
+		Roulette recovered = new Roulette();
+		recovered.attachJournal(new BetJournal(file));
+		assertEquals(noOfThreads * betsPerThread, recovered.betTable.size());
+		assertEquals(noOfThreads * betsPerThread * 2, recovered.getMaxExposure(), 0);
+	}
+
+	/**
+	 * Test replay stops at a record torn by a crash, and new records replace it and what followed it
+	 * @throws IOException
+	 */
+	@Test
+	public void testTornRecord() throws IOException{
+		File file = folder.newFile();
+		int noOfBets = 10;
+		long tornPosition;
+		try (BetJournal journal = new BetJournal(file, 4096)) {
+			tornPosition = journal.getPosition();
+			for(int betId=0; betId<noOfBets; betId++){
+				if(betId == 6)	tornPosition = journal.getPosition();
+				journal.appendBet(betId, Roulette.NO_PLAYER, 0, 1L, 100);
+			}
+		}
+		try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+			//the amount of bet 6 never reached the disk
+			raw.seek(tornPosition + 20);
+			raw.write(0x7F);
+		}
+
+		List<String> records = new ArrayList<String>();
+		try (BetJournal journal = new BetJournal(file, 4096)) {
+			journal.replay(new RecordCollector(records));
+			assertEquals(6, records.size());
+			assertEquals(tornPosition, journal.getPosition());
+			journal.sync(journal.appendBet(100, Roulette.NO_PLAYER, 0, 1L, 100));
+		}
+		records.clear();
+		try (BetJournal journal = new BetJournal(file, 4096)) {
+			journal.replay(new RecordCollector(records));
+			assertEquals(7, records.size());
+			assertEquals("bet 100 0 0 1 100", records.get(6));
+		}
+	}
+
+	/**
+	 * Test a reset drops the records and the segments, positions go on from where they were
+	 * @throws IOException
+	 */
+	@Test
+	public void testReset() throws IOException{
+		File file = folder.newFile();
+		long position;
+		try (BetJournal journal = new BetJournal(file, 4096)) {
+			for(int betId=0; betId<1000; betId++){
+				journal.appendBet(betId, Roulette.NO_PLAYER, Roulette.INSIDE_BET, 1L << (betId % 37), 100);
+			}
+			journal.appendSpin(5);
+			position = journal.getPosition();
+			journal.reset();
+			assertEquals(4096, file.length());
+			assertEquals(position, journal.getPosition());
+			journal.sync(journal.appendPay(7));
+			assertTrue(journal.getPosition() > position);
+		}
+
+		List<String> records = new ArrayList<String>();
+		try (BetJournal journal = new BetJournal(file)) {
+			journal.replay(new RecordCollector(records), position);
+			assertEquals(1, records.size());
+			assertEquals("pay 7", records.get(0));
+			try {
+				journal.replay(new RecordCollector(records));
+				fail("Records dropped by the reset replayed");
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Test a truncate drops the records before the position only, while records are appended, 
+	 * and every record appended keeps its place
+	 * @throws Exception
+	 */
+	@Test(timeout = 60000)
+	public void testTruncate() throws Exception{
+		File file = folder.newFile();
+		int noOfBets = 1000;
+		int noOfLaterBets = 20000;
+		long position;
+		try (BetJournal journal = new BetJournal(file, 4096)) {
+			for(int betId=0; betId<noOfBets; betId++){
+				journal.appendBet(betId, Roulette.NO_PLAYER, 0, 1L, 100);
+			}
+			position = journal.getPosition();
+			Thread appender = new Thread(() -> {
+				for(int betId=noOfBets; betId<noOfBets+noOfLaterBets; betId++){
+					journal.sync(journal.appendBet(betId, Roulette.NO_PLAYER, 0, 1L, 100));
+				}
+			});
+			appender.start();
+			journal.truncate(position);
+			appender.join();
+			assertFalse(new File(file.getPath() + ".tmp").exists());
+			journal.appendSpin(5);
+		}
+
+		List<String> records = new ArrayList<String>();
+		try (BetJournal journal = new BetJournal(file, 4096)) {
+			journal.replay(new RecordCollector(records), position);
+			assertEquals(noOfLaterBets + 1, records.size());
+			for(int i=0; i<noOfLaterBets; i++){
+				assertEquals("bet " + (noOfBets + i) + " 0 0 1 100", records.get(i));
+			}
+			assertEquals("spin 5", records.get(noOfLaterBets));
+			try {
+				journal.replay(new RecordCollector(records));
+				fail("Records dropped by the truncate replayed");
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotAJournal() throws IOException{
+		File file = folder.newFile();
+		Files.write(file.toPath(), "not a journal at all".getBytes());
+		new BetJournal(file).close();
+	}
+
+	private static class RecordCollector implements BetJournal.RecordHandler {
+		private final List<String> records;
+
+		RecordCollector(List<String> records){
+			this.records = records;
+		}
+		public void bet(int betId, int playerId, int betKind, long coverage, long betAmount) {
+			records.add("bet " + betId + " " + playerId + " " + betKind + " " + coverage + " " + betAmount);
+		}
+		public void pay(int betId) {
+			records.add("pay " + betId);
+		}
+		public void spin(int winningNumber) {
+			records.add("spin " + winningNumber);
+		}
+		public void settle() {
+			records.add("settle");
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Unit test for BetTable
+ */
+public class BetTableTest
+{
+
+	/**
+	 * Bets can be found by ID and duplicated IDs are refused
+	 */
+	@Test
+	public void testPutAndFind(){
+		BetTable betTable = new BetTable(Roulette.EUROPEAN_TOTAL);
+		int slot = betTable.put(123, Roulette.INSIDE_BET, 1L << 8, 500);
+		assertTrue(slot >= 0);
+		assertEquals(-1, betTable.put(123, 0, 1L << 9, 100));
+
+		assertEquals(slot, betTable.find(123));
+		assertEquals(-1, betTable.find(124));
+		assertEquals(123, betTable.getBetId(slot));
+		assertEquals(1L << 8, betTable.getCoverage(slot));
+		assertEquals(500, betTable.getBetAmount(slot), 0);
+		assertEquals(1, betTable.size());
+	}
+
+	/**
+	 * Removed bets are not found any more, and their ID can be used again
+	 */
+	@Test
+	public void testRemove(){
+		BetTable betTable = new BetTable(Roulette.EUROPEAN_TOTAL);
+		betTable.put(1, Roulette.INSIDE_BET, 1L << 8, 100);
+		betTable.put(2, Roulette.INSIDE_BET, 1L << 8, 100);
+		betTable.remove(betTable.find(1));
+
+		assertEquals(-1, betTable.find(1));
+		assertEquals(1, betTable.size());
+		assertArrayEquals(new int[]{betTable.find(2)}, betTable.findCovering(8));
+
+		int slot = betTable.put(1, Roulette.INSIDE_BET, 1L << 9, 100);
+		assertEquals(slot, betTable.find(1));
+		assertEquals(1, betTable.findCovering(8).length);
+		assertArrayEquals(new int[]{slot}, betTable.findCovering(9));
+	}
+
+	/**
+	 * Table keeps every bet and its coverage while growing
+	 */
+	@Test
+	public void testGrow(){
+		BetTable betTable = new BetTable(Roulette.EUROPEAN_TOTAL);
+		int noOfBets = 100000;
+		for(int betId=0; betId<noOfBets; betId++){
+			assertTrue(betTable.put(betId, Roulette.INSIDE_BET, 1L << (betId % Roulette.EUROPEAN_TOTAL), betId) >= 0);
+		}
+		for(int betId=0; betId<noOfBets; betId+=2){
+			betTable.remove(betTable.find(betId));
+		}
+		assertEquals(noOfBets / 2, betTable.size());
+
+		int covering = 0;
+		for(int number=0; number<Roulette.EUROPEAN_TOTAL; number++){
+			for(int slot : betTable.findCovering(number)){
+				assertEquals(number, betTable.getBetId(slot) % Roulette.EUROPEAN_TOTAL);
+				assertEquals(1, betTable.getBetId(slot) % 2);
+				covering++;
+			}
+		}
+		assertEquals(noOfBets / 2, covering);
+
+		betTable.clear();
+		assertEquals(0, betTable.size());
+		assertEquals(-1, betTable.find(1));
+		assertEquals(0, betTable.findCovering(1).length);
+	}
+
+	/**
+	 * Off heap table keeps bet kinds, finds covering bets without an index and frees all slots at once
+	 */
+	@Test
+	public void testOffHeap(){
+		BetTable betTable = new BetTable(Roulette.EUROPEAN_TOTAL, 0, true);
+		int noOfBets = 10000;
+		for(int betId=0; betId<noOfBets; betId++){
+			int betKind = betId % 2 == 0 ? Roulette.INSIDE_BET : 12;
+			assertTrue(betTable.put(betId, betKind, 1L << (betId % Roulette.EUROPEAN_TOTAL), betId * 100L) >= 0);
+		}
+		assertEquals(-1, betTable.put(5, 0, 1L, 1));
+		betTable.remove(betTable.find(8 + Roulette.EUROPEAN_TOTAL));
+
+		int[] slots = betTable.findCovering(8);
+		assertEquals(noOfBets / Roulette.EUROPEAN_TOTAL, slots.length);
+		for(int slot : slots){
+			int betId = betTable.getBetId(slot);
+			assertEquals(8, betId % Roulette.EUROPEAN_TOTAL);
+			assertEquals(betId % 2 == 0 ? Roulette.INSIDE_BET : 12, betTable.getBetKind(slot));
+			assertEquals(betId * 100L, betTable.getBetAmount(slot));
+		}
+
+		betTable.clear();
+		assertEquals(0, betTable.size());
+		assertEquals(-1, betTable.find(1));
+		assertEquals(0, betTable.findCovering(8).length);
+		int slot = betTable.put(1, 3, 1L << 9, 100);
+		assertEquals(slot, betTable.find(1));
+		assertArrayEquals(new int[]{slot}, betTable.findCovering(9));
+	}
+
+	/**
+	 * Test an off heap table gives back the slots of a big round once a small round is cleared,
+	 * and refuses to grow over the slots a buffer can address
+	 */
+	@Test
+	public void testOffHeapShrink(){
+		BetTable betTable = new BetTable(Roulette.EUROPEAN_TOTAL, 0, true);
+		int minCapacity = betTable.capacity();
+		for(int betId=0; betId<10000; betId++){
+			betTable.put(betId, 0, 1L, 100);
+		}
+		int bigCapacity = betTable.capacity();
+		assertTrue(bigCapacity >= 20000);
+		betTable.clear();
+		//the round just cleared needed all the slots
+		assertEquals(bigCapacity, betTable.capacity());
+		betTable.put(1, 0, 1L, 100);
+		betTable.clear();
+		assertEquals(minCapacity, betTable.capacity());
+		assertEquals(-1, betTable.find(1));
+
+		try {
+			new OffHeapBetRecords(OffHeapBetRecords.MAX_CAPACITY * 2);
+			fail("Records over the maximum capacity allocated");
+		} catch (IllegalStateException e) {
+		}
+	}
+}
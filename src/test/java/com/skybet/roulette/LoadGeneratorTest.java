@@ -0,0 +1,103 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit test for LoadGenerator
+ */
+public class LoadGeneratorTest
+{
+	/**
+	 * Test every scheduled bet is placed over the tables, with spins and interval reports on the way
+	 * @throws Exception
+	 */
+	@Test
+	public void testRun() throws Exception{
+		Roulette[] tables = {new Roulette(), new Roulette(WheelLayout.AMERICAN)};
+		LoadGenerator generator = new LoadGenerator(tables);
+		generator.setNoOfThreads(2);
+		generator.setSpinInterval(100);
+		generator.setSeed(20170601L);
+		List<LoadReport> intervals = new ArrayList<LoadReport>();
+		generator.setIntervalReports(200, intervals::add);
+
+		LoadReport report = generator.run(5000, 1000);
+		assertEquals(5000, report.getNoOfBets());
+		assertEquals(5000, LatencyHistogram.count(report.getLatencies()));
+		assertTrue(report.toString(), report.getNoOfSpins() > 0);
+		assertTrue(report.toString(), report.getNoOfRefusedBets() < report.getNoOfBets());
+		assertTrue(report.getLatencyAt(0.99) >= report.getServiceTimeAt(0.99));
+		assertTrue(report.getMaxLatency() >= report.getLatencyAt(0.5));
+		assertFalse(intervals.isEmpty());
+		long intervalBets = 0;
+		for(LoadReport interval : intervals){
+			intervalBets += interval.getNoOfBets();
+		}
+		assertTrue(intervalBets <= report.getNoOfBets());
+		for(Roulette table : tables){
+			assertEquals(report.getNoOfSpins(), table.getRound() - 1);
+		}
+	}
+
+	/**
+	 * Test a table failing to spin is counted, and the other spins of the run go on
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailedSpin() throws Exception{
+		Roulette failing = new Roulette(){
+			private boolean failed;
+
+			@Override
+			public synchronized int spin() {
+				if(!failed){
+					failed = true;
+					throw new IllegalStateException("Wheel stuck");
+				}
+				return super.spin();
+			}
+		};
+		LoadGenerator generator = new LoadGenerator(failing);
+		generator.setNoOfThreads(1);
+		generator.setSpinInterval(100);
+
+		LoadReport report = generator.run(1000, 1000);
+		assertEquals(1, report.getNoOfFailedSpins());
+		assertTrue(report.toString(), report.getNoOfSpins() > 0);
+		assertEquals(report.getNoOfSpins(), failing.getRound() - 1);
+		assertTrue(report.toString(), report.toString().contains("(1 failed)"));
+	}
+
+	/**
+	 * Test a stall of the table is charged to every bet scheduled during it, not only to the one it held up
+	 * @throws Exception
+	 */
+	@Test
+	public void testCoordinatedOmission() throws Exception{
+		long stallMillis = 200;
+		Roulette stalling = new Roulette(){
+			@Override
+			public boolean placeBet(int betId, String betType, long betAmount) throws Exception {
+				if(betId == 1000){
+					Thread.sleep(stallMillis);
+				}
+				return super.placeBet(betId, betType, betAmount);
+			}
+		};
+		LoadGenerator generator = new LoadGenerator(stalling);
+		generator.setNoOfThreads(1);
+		generator.setInsideBetRatio(0);
+		generator.setSpinInterval(0);
+
+		LoadReport report = generator.run(10000, 1000);
+		assertEquals(10000, report.getNoOfBets());
+		assertTrue(report.toString(), report.getMaxLatency() >= stallMillis * 900000);
+		assertTrue(report.toString(), report.getLatencyAt(0.99) > stallMillis * 250000);
+		assertTrue(report.toString(), report.getServiceTimeAt(0.99) < stallMillis * 250000);
+	}
+}
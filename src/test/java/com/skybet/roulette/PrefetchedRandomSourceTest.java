@@ -0,0 +1,118 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit test for PrefetchedRandomSource, with local stand-ins for the remote random sources
+ */
+public class PrefetchedRandomSourceTest
+{
+
+	/**
+	 * Numbers come from the buffer once filled, and stay on the wheel
+	 * @throws Exception 
+	 */
+	@Test
+	public void testPrefetched() throws Exception{
+		CountingRandomSource source = new CountingRandomSource(new JdkRandomSource(new Random(1)));
+		try (PrefetchedRandomSource prefetched = new PrefetchedRandomSource(source, 
+				new FailingRandomSource(), Roulette.EUROPEAN_TOTAL, 1024)) {
+			waitUntilFull(prefetched, 1024);
+			
+			Roulette roulette = new Roulette();
+			roulette.setRandomSource(prefetched);
+			for(int i=0; i<1024; i++){
+				int number = roulette.spin();
+				assertTrue(number >= 0 && number < Roulette.EUROPEAN_TOTAL);
+			}
+			assertEquals(0, prefetched.getNoOfFallbacks());
+			assertTrue(source.count >= 1024);
+		}
+	}
+
+	/**
+	 * A source that stops answering does not hold up the spins
+	 * @throws Exception 
+	 */
+	@Test
+	public void testFallback() throws Exception{
+		CountDownLatch blocked = new CountDownLatch(1);
+		RandomSource blocking = bound -> {
+			try {
+				blocked.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return 0;
+		};
+		try (PrefetchedRandomSource prefetched = new PrefetchedRandomSource(blocking, 
+				new JdkRandomSource(new Random(1)), Roulette.EUROPEAN_TOTAL, 16)) {
+			for(int i=0; i<100; i++){
+				prefetched.nextInt(Roulette.EUROPEAN_TOTAL);
+			}
+			assertEquals(100, prefetched.getNoOfFallbacks());
+		}
+	}
+
+	/**
+	 * Failures of the source are counted and retried
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSourceFailure() throws Exception{
+		try (PrefetchedRandomSource prefetched = new PrefetchedRandomSource(new FailingRandomSource(), 
+				new JdkRandomSource(new Random(1)), Roulette.EUROPEAN_TOTAL, 16)) {
+			long timeout = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while(prefetched.getNoOfSourceFailures() == 0 && System.nanoTime() < timeout){
+				Thread.sleep(1);
+			}
+			assertTrue(prefetched.getNoOfSourceFailures() > 0);
+			assertEquals(0, prefetched.available());
+			prefetched.nextInt(Roulette.EUROPEAN_TOTAL);
+			assertEquals(1, prefetched.getNoOfFallbacks());
+		}
+	}
+
+	/**
+	 * Buffer only serves the wheel it is drawn for
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongWheel(){
+		try (PrefetchedRandomSource prefetched = new PrefetchedRandomSource(new FailingRandomSource(), 
+				new FailingRandomSource(), Roulette.EUROPEAN_TOTAL, 16)) {
+			prefetched.nextInt(38);
+		}
+	}
+
+	private void waitUntilFull(PrefetchedRandomSource prefetched, int capacity) throws InterruptedException {
+		long timeout = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while(prefetched.available() < capacity && System.nanoTime() < timeout){
+			Thread.sleep(1);
+		}
+		assertEquals(capacity, prefetched.available());
+	}
+
+	class CountingRandomSource implements RandomSource {
+		private final RandomSource source;
+		volatile int count;
+		CountingRandomSource(RandomSource source){
+			this.source = source;
+		}
+		public int nextInt(int bound) {
+			count++;
+			return source.nextInt(bound);
+		}
+	}
+
+	class FailingRandomSource implements RandomSource {
+		public int nextInt(int bound) {
+			throw new IllegalStateException("Service denied");
+		}
+	}
+}
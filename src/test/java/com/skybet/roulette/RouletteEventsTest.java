@@ -0,0 +1,176 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.Test;
+
+/**
+ * Unit test for RouletteEvents
+ */
+public class RouletteEventsTest
+{
+	/**
+	 * Test spins and settlements are published once per round, in order
+	 * @throws Exception
+	 */
+	@Test
+	public void testPublish() throws Exception{
+		Roulette roulette = new Roulette();
+		roulette.setEvents(new RouletteEvents(Runnable::run, 16));
+		roulette.setRandomSource(bound -> 8);
+		CollectingSubscriber<SpinResult> spins = new CollectingSubscriber<SpinResult>(Long.MAX_VALUE);
+		CollectingSubscriber<RoundSettlement> settlements = new CollectingSubscriber<RoundSettlement>(Long.MAX_VALUE);
+		roulette.getEvents().spins().subscribe(spins);
+		roulette.getEvents().settlements().subscribe(settlements);
+
+		assertTrue(roulette.placeBet(1, "even", 100));
+		assertTrue(roulette.placeBet(2, "odd", 100));
+		roulette.spin();
+		roulette.settleRound();
+		roulette.settleRound();
+		roulette.spin();
+		roulette.settleRound();
+
+		assertEquals(2, spins.events.size());
+		assertEquals(1, spins.events.get(0).getRound());
+		assertEquals(8, spins.events.get(0).getWinningNumber());
+		assertEquals(2, spins.events.get(1).getRound());
+		assertEquals(2, settlements.events.size());
+		assertEquals(1, settlements.events.get(0).getRound());
+		assertArrayEquals(new int[]{1}, settlements.events.get(0).getBetIds());
+		settlements.events.get(0).getBetIds()[0] = 2;
+		assertEquals(1, settlements.events.get(0).getBetId(0));
+		assertEquals(200, settlements.events.get(0).getTotalPayout());
+		assertEquals(1, settlements.events.get(0).getNoOfLosingBets());
+		assertEquals(2, settlements.events.get(1).getRound());
+		assertEquals(0, settlements.events.get(1).size());
+
+		roulette.getEvents().close();
+		assertTrue(spins.completed);
+		assertTrue(settlements.completed);
+	}
+
+	/**
+	 * Test a subscriber not requesting more only loses its own events, and never holds up spinning
+	 */
+	@Test
+	public void testSlowSubscriber(){
+		int bufferCapacity = 4;
+		int noOfSpins = 20;
+		Roulette roulette = new Roulette();
+		roulette.setEvents(new RouletteEvents(Runnable::run, bufferCapacity));
+		CollectingSubscriber<SpinResult> slow = new CollectingSubscriber<SpinResult>(1);
+		CollectingSubscriber<SpinResult> fast = new CollectingSubscriber<SpinResult>(Long.MAX_VALUE);
+		roulette.getEvents().spins().subscribe(slow);
+		roulette.getEvents().spins().subscribe(fast);
+
+		for(int i=0; i<noOfSpins; i++){
+			roulette.spin();
+		}
+		assertEquals(noOfSpins, fast.events.size());
+		assertEquals(1, slow.events.size());
+		assertEquals(noOfSpins - 1 - bufferCapacity, roulette.getEvents().getNoOfDroppedEvents());
+
+		slow.subscription.request(Long.MAX_VALUE);
+		assertEquals(1 + bufferCapacity, slow.events.size());
+		for(int i=1; i<slow.events.size(); i++){
+			assertEquals(i + 1, slow.events.get(i).getRound());
+		}
+	}
+
+	/**
+	 * Test a subscriber not requesting more settlements gets every one of them once it does, in order,
+	 * as long as they fit into its buffer, while settling goes on meanwhile
+	 * @throws Exception
+	 */
+	@Test(timeout = 10000)
+	public void testSlowSettlementSubscriber() throws Exception{
+		int bufferCapacity = 4;
+		int noOfRounds = 1 + bufferCapacity;
+		Roulette roulette = new Roulette();
+		roulette.setEvents(new RouletteEvents(Runnable::run, bufferCapacity));
+		CollectingSubscriber<RoundSettlement> slow = new CollectingSubscriber<RoundSettlement>(1);
+		CollectingSubscriber<RoundSettlement> fast = new CollectingSubscriber<RoundSettlement>(Long.MAX_VALUE);
+		roulette.getEvents().settlements().subscribe(slow);
+		roulette.getEvents().settlements().subscribe(fast);
+
+		settleRounds(roulette, noOfRounds);
+		slow.subscription.request(Long.MAX_VALUE);
+		while(slow.events.size() < noOfRounds || fast.events.size() < noOfRounds){
+			Thread.sleep(10);
+		}
+		for(int i=0; i<noOfRounds; i++){
+			assertEquals(i + 1, slow.events.get(i).getRound());
+			assertSame(slow.events.get(i), fast.events.get(i));
+		}
+		assertEquals(0, roulette.getEvents().getNoOfDroppedEvents());
+	}
+
+	/**
+	 * Test a settlement subscriber a whole buffer behind is ended with an error, while the others 
+	 * keep getting every settlement
+	 */
+	@Test
+	public void testSettlementSubscriberLeftBehind(){
+		int bufferCapacity = 4;
+		int noOfRounds = 20;
+		Roulette roulette = new Roulette();
+		roulette.setEvents(new RouletteEvents(Runnable::run, bufferCapacity));
+		CollectingSubscriber<RoundSettlement> slow = new CollectingSubscriber<RoundSettlement>(1);
+		CollectingSubscriber<RoundSettlement> fast = new CollectingSubscriber<RoundSettlement>(Long.MAX_VALUE);
+		roulette.getEvents().settlements().subscribe(slow);
+		roulette.getEvents().settlements().subscribe(fast);
+
+		settleRounds(roulette, noOfRounds);
+		assertEquals(noOfRounds, fast.events.size());
+		assertNull(fast.error);
+		assertTrue(slow.error instanceof IllegalStateException);
+		assertFalse(slow.completed);
+		assertEquals(1, roulette.getEvents().getNoOfDroppedEvents());
+		for(int i=0; i<slow.events.size(); i++){
+			assertEquals(i + 1, slow.events.get(i).getRound());
+		}
+	}
+
+	private static void settleRounds(Roulette roulette, int noOfRounds) {
+		for(int i=0; i<noOfRounds; i++){
+			try {
+				assertTrue(roulette.placeBet(i, "red", 100));
+			} catch (Exception e) {
+				throw new AssertionError(e);
+			}
+			roulette.spin();
+			roulette.settleRound();
+		}
+	}
+
+	private static class CollectingSubscriber<T> implements Flow.Subscriber<T> {
+		private final long initialDemand;
+		private final List<T> events = Collections.synchronizedList(new ArrayList<T>());
+		private Flow.Subscription subscription;
+		private boolean completed;
+		private Throwable error;
+
+		CollectingSubscriber(long initialDemand){
+			this.initialDemand = initialDemand;
+		}
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(initialDemand);
+		}
+		public void onNext(T event) {
+			events.add(event);
+		}
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+		public void onComplete() {
+			completed = true;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.junit.Test;
+
+/**
+ * Unit test for RouletteMetrics and LatencyHistogram
+ */
+public class RouletteMetricsTest
+{
+
+	/**
+	 * Percentiles are kept within the precision of the buckets
+	 */
+	@Test
+	public void testHistogram(){
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long nanos=1; nanos<=100000; nanos++){
+			histogram.record(nanos);
+		}
+		long[] counts = histogram.snapshot();
+		assertEquals(100000, LatencyHistogram.count(counts));
+		assertEquals(50000, LatencyHistogram.valueAt(counts, 0.5), 50000 * 0.07);
+		assertEquals(99000, LatencyHistogram.valueAt(counts, 0.99), 99000 * 0.07);
+		assertEquals(99900, LatencyHistogram.valueAt(counts, 0.999), 99900 * 0.07);
+		assertTrue(LatencyHistogram.max(counts) >= 100000);
+		
+		for(long nanos=0; nanos<1L<<41; nanos=nanos*2+1){
+			int bucket = LatencyHistogram.bucketOf(nanos);
+			assertTrue(LatencyHistogram.upperBoundOf(bucket) >= nanos || nanos >= 1L<<40);
+			assertTrue(bucket == 0 || LatencyHistogram.upperBoundOf(bucket - 1) < nanos);
+		}
+	}
+
+	/**
+	 * Threads recording into the same buckets lose no count
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentRecording() throws Exception{
+		LatencyHistogram histogram = new LatencyHistogram();
+		Thread[] threads = new Thread[4];
+		for(int i=0; i<threads.length; i++){
+			threads[i] = new Thread(() -> {
+				for(int j=0; j<100000; j++){
+					histogram.record(1000 + j % 2);
+				}
+			});
+			threads[i].start();
+		}
+		for(Thread thread : threads){
+			thread.join();
+		}
+		assertEquals(threads.length * 100000, LatencyHistogram.count(histogram.snapshot()));
+	}
+
+	/**
+	 * Operations, bets and gauges show in the snapshot and through JMX
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSnapshot() throws Exception{
+		Roulette roulette = new Roulette();
+		assertTrue(roulette.placeBet(1, "red", 100));
+		assertTrue(roulette.placeBet(2, "red", 100));
+		assertTrue(roulette.placeBet(3, new int[]{8, 11}, 100));
+		
+		Map<String, Long> snapshot = roulette.getMetrics().snapshot();
+		assertEquals(3, snapshot.get("placeBet.count").longValue());
+		assertTrue(snapshot.get("placeBet.p50") > 0);
+		assertEquals(2, snapshot.get("bets.red").longValue());
+		assertEquals(1, snapshot.get("bets.split").longValue());
+		assertEquals(3, snapshot.get("openBets").longValue());
+		
+		roulette.spin();
+		roulette.pay(1);
+		snapshot = roulette.getMetrics().snapshot();
+		assertEquals(1, snapshot.get("spin.count").longValue());
+		assertEquals(1, snapshot.get("pay.count").longValue());
+		assertEquals(0, snapshot.get("openBets").longValue());
+		assertEquals(2, snapshot.get("unsettledBets").longValue());
+		
+		ObjectName name = roulette.getMetrics().registerMBean("testSnapshot");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			assertEquals(2L, server.getAttribute(name, "unsettledBets"));
+			assertEquals(2L, server.getAttribute(name, "bets.red"));
+			try {
+				server.invoke(name, "reset", new Object[0], new String[0]);
+				fail("Operation invoked on the metrics");
+			} catch (ReflectionException e) {
+				assertTrue(e.getTargetException() instanceof NoSuchMethodException);
+			}
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for RouletteServer, over loopback
+ */
+public class RouletteServerTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private Roulette roulette;
+	private RouletteServer server;
+
+	@Before
+	public void startServer() throws IOException{
+		roulette = new Roulette();
+		roulette.setRandomSource(bound -> 8);
+		server = new RouletteServer(roulette, new InetSocketAddress("localhost", 0), new InetSocketAddress("localhost", 0), 2);
+	}
+
+	@After
+	public void stopServer() throws IOException{
+		server.close();
+	}
+
+	/**
+	 * Test pipelined requests of a single connection are answered in order
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipelining() throws Exception{
+		int betAmount = 100;
+		try (SocketChannel client = connect()) {
+			ByteBuffer requests = ByteBuffer.allocate(1024);
+			putOutsideBet(requests, 1, "low", betAmount);
+			putOutsideBet(requests, 2, "high", betAmount);
+			putOutsideBet(requests, 2, "high", betAmount);
+			putInsideBet(requests, 3, new int[]{7,8,10,11}, betAmount);
+			putInsideBet(requests, 4, new int[]{7,9}, betAmount);
+			requests.putInt(1).put(RouletteServer.GET_SPIN_RESULT);
+			requests.putInt(1).put((byte) 99);
+			send(client, requests);
+
+			ByteBuffer responses = receive(client, 7);
+			assertEquals(RouletteServer.OK, responses.get(4));
+			assertEquals(RouletteServer.OK, responses.get(9));
+			assertEquals(RouletteServer.DUPLICATE, responses.get(14));
+			assertEquals(RouletteServer.OK, responses.get(19));
+			assertEquals(RouletteServer.REFUSED, responses.get(24));
+			assertEquals(RouletteServer.NOT_FOUND, responses.get(29));
+			assertEquals(RouletteServer.BAD_REQUEST, responses.get(25 + 14 + 4));
+
+			roulette.spin();
+			requests.clear();
+			requests.putInt(1).put(RouletteServer.GET_SPIN_RESULT);
+			for(int betId=1; betId<=4; betId++){
+				requests.putInt(5).put(RouletteServer.PAY).putInt(betId);
+			}
+			send(client, requests);
+			responses = receive(client, 5);
+			assertEquals(RouletteServer.OK, responses.get(4));
+			assertEquals(1, responses.getLong(5));
+			assertEquals(8, responses.get(13));
+			int position = 14;
+			long[] payouts = {betAmount*2, 0, betAmount*9};
+			for(long payout : payouts){
+				assertEquals(9, responses.getInt(position));
+				assertEquals(RouletteServer.OK, responses.get(position + 4));
+				assertEquals(payout, responses.getLong(position + 5));
+				position += 13;
+			}
+			assertEquals(RouletteServer.NOT_FOUND, responses.get(position + 4));
+		}
+	}
+
+	/**
+	 * Test pipelined requests with responses over several output buffers are all answered,
+	 * without the client sending anything more
+	 * @throws Exception
+	 */
+	@Test(timeout = 10000)
+	public void testPipeliningOverOutputBuffer() throws Exception{
+		int noOfRequests = 200;
+		try (SocketChannel client = connectCoordinator()) {
+			ByteBuffer requests = ByteBuffer.allocate(noOfRequests * 5);
+			for(int i=0; i<noOfRequests; i++){
+				requests.putInt(1).put(RouletteServer.GET_LIABILITIES);
+			}
+			send(client, requests);
+			ByteBuffer responses = receive(client, noOfRequests);
+			int responseSize = 4 + 1 + 1 + roulette.getNoOfNumbers() * 8;
+			assertEquals(noOfRequests * responseSize, responses.remaining());
+			assertEquals(RouletteServer.OK, responses.get((noOfRequests - 1) * responseSize + 4));
+
+			roulette.spin();
+			requests = ByteBuffer.allocate(noOfRequests * 2 * 9);
+			for(int betId=0; betId<noOfRequests * 2; betId++){
+				requests.putInt(5).put(RouletteServer.PAY).putInt(betId);
+			}
+			send(client, requests);
+			assertEquals(noOfRequests * 2 * 13, receive(client, noOfRequests * 2).remaining());
+		}
+	}
+
+	/**
+	 * Test pipelined bets are placed as one batch into the journal, answered in order, while 
+	 * another connection is served
+	 * @throws Exception
+	 */
+	@Test(timeout = 10000)
+	public void testPipelinedBetsWithJournal() throws Exception{
+		int noOfBets = 100;
+		File journalFile = folder.newFile();
+		roulette.attachJournal(new BetJournal(journalFile, 4096));
+		try (SocketChannel client = connect(); SocketChannel other = connect()) {
+			ByteBuffer requests = ByteBuffer.allocate(4096);
+			for(int betId=0; betId<noOfBets; betId++){
+				putOutsideBet(requests, betId, betId % 2 == 0 ? "even" : "odd", 100);
+			}
+			putInsideBet(requests, 0, new int[]{1, 2, 3}, 100);
+			requests.putInt(1).put(RouletteServer.GET_SPIN_RESULT);
+			send(client, requests);
+			requests = ByteBuffer.allocate(18);
+			putOutsideBet(requests, noOfBets, "red", 100);
+			send(other, requests);
+			assertEquals(RouletteServer.OK, receive(other, 1).get(4));
+
+			ByteBuffer responses = receive(client, noOfBets + 2);
+			for(int i=0; i<noOfBets; i++){
+				assertEquals(1, responses.getInt(i * 5));
+				assertEquals(RouletteServer.OK, responses.get(i * 5 + 4));
+			}
+			assertEquals(RouletteServer.DUPLICATE, responses.get(noOfBets * 5 + 4));
+			assertEquals(RouletteServer.NOT_FOUND, responses.get((noOfBets + 1) * 5 + 4));
+			assertTrue(roulette.getMetrics().snapshot().get("placeBets.count") >= 1);
+		}
+		Roulette restored = new Roulette();
+		restored.attachJournal(new BetJournal(journalFile, 4096));
+		assertEquals(noOfBets + 1, restored.betTable.size());
+		for(int number=0; number<Roulette.EUROPEAN_TOTAL; number++){
+			assertEquals(roulette.getLiability(number), restored.getLiability(number));
+		}
+	}
+
+	/**
+	 * Test a bet of a negative amount is refused and leaves the liabilities untouched
+	 * @throws Exception
+	 */
+	@Test
+	public void testNegativeBetAmount() throws Exception{
+		try (SocketChannel client = connect()) {
+			ByteBuffer requests = ByteBuffer.allocate(64);
+			putInsideBet(requests, 1, new int[]{8}, -100);
+			putOutsideBet(requests, 2, "even", 0);
+			send(client, requests);
+			ByteBuffer responses = receive(client, 2);
+			assertEquals(RouletteServer.REFUSED, responses.get(4));
+			assertEquals(RouletteServer.REFUSED, responses.get(9));
+			assertEquals(0, roulette.getLiability(8));
+		}
+	}
+
+	/**
+	 * Test a client places outside bets by the bet types of the wheel layout of the server
+	 * @throws Exception
+	 */
+	@Test
+	public void testCustomLayout() throws Exception{
+		WheelLayout mini = new WheelLayout.Builder("Mini", 13)
+				.zeroBet(0, 1)
+				.outsideBet("neighbours", 3, 11, 12, 0, 1)
+				.outsideBet("low", 2, 1, 2, 3, 4, 5, 6)
+				.build();
+		Roulette miniRoulette = new Roulette(mini);
+		try (RouletteServer miniServer = new RouletteServer(miniRoulette, new InetSocketAddress("localhost", 0), 1);
+				RouletteClient client = new RouletteClient(new InetSocketAddress("localhost", miniServer.getPort()))) {
+			assertArrayEquals(new String[]{"neighbours", "low"}, client.getOutsideBetTypes());
+			assertEquals(RouletteServer.OK, client.placeBet(1, "low", 100));
+			assertEquals(RouletteServer.OK, client.placeBet(2, "neighbours", 100));
+			assertEquals(RouletteServer.REFUSED, client.placeBet(3, "red", 100));
+			assertEquals(200, miniRoulette.getLiability(2));
+			assertEquals(300, miniRoulette.getLiability(12));
+		}
+	}
+
+	/**
+	 * Test the requests of the coordinator are only taken on the coordinator address
+	 * @throws Exception
+	 */
+	@Test
+	public void testCoordinatorRequests() throws Exception{
+		try (SocketChannel client = connect()) {
+			ByteBuffer requests = ByteBuffer.allocate(64);
+			putInsideBet(requests, 1, new int[]{17}, 100);
+			requests.putInt(2).put(RouletteServer.SPIN_TO).put((byte) 17);
+			requests.putInt(1).put(RouletteServer.CLOSE_BETTING);
+			requests.putInt(1).put(RouletteServer.SETTLE_ROUND);
+			requests.putInt(1).put(RouletteServer.GET_LIABILITIES);
+			send(client, requests);
+			ByteBuffer responses = receive(client, 5);
+			assertEquals(RouletteServer.OK, responses.get(4));
+			for(int i=0; i<4; i++){
+				assertEquals(1, responses.getInt(5 + i * 5));
+				assertEquals(RouletteServer.BAD_REQUEST, responses.get(5 + i * 5 + 4));
+			}
+			assertEquals(1, roulette.getRound());
+		}
+		try (SocketChannel coordinator = connectCoordinator()) {
+			ByteBuffer requests = ByteBuffer.allocate(64);
+			requests.putInt(2).put(RouletteServer.SPIN_TO).put((byte) 17);
+			send(coordinator, requests);
+			ByteBuffer responses = receive(coordinator, 1);
+			assertEquals(RouletteServer.OK, responses.get(4));
+			assertEquals(1, responses.getLong(5));
+			assertEquals(17, roulette.getCurrentNumber());
+		}
+	}
+
+	/**
+	 * Test a frame over the maximum size closes the connection
+	 * @throws Exception
+	 */
+	@Test
+	public void testFrameTooLong() throws Exception{
+		try (SocketChannel client = connect()) {
+			ByteBuffer request = ByteBuffer.allocate(4);
+			request.putInt(RouletteServer.MAX_FRAME_SIZE + 1);
+			send(client, request);
+			assertEquals(-1, client.read(ByteBuffer.allocate(1)));
+		}
+	}
+
+	/**
+	 * Test many connections served by a few event loop threads
+	 * @throws Exception
+	 */
+	@Test
+	public void testManyConnections() throws Exception{
+		int noOfClients = 500;
+		List<SocketChannel> clients = new ArrayList<SocketChannel>();
+		try {
+			for(int i=0; i<noOfClients; i++){
+				clients.add(connect());
+			}
+			ByteBuffer request = ByteBuffer.allocate(64);
+			for(int i=0; i<noOfClients; i++){
+				request.clear();
+				putOutsideBet(request, i, "red", 1);
+				send(clients.get(i), request);
+			}
+			for(SocketChannel client : clients){
+				assertEquals(RouletteServer.OK, receive(client, 1).get(4));
+			}
+			assertEquals(noOfClients, roulette.betTable.size());
+		} finally {
+			for(SocketChannel client : clients){
+				client.close();
+			}
+		}
+	}
+
+	private SocketChannel connect() throws IOException{
+		return SocketChannel.open(new InetSocketAddress("localhost", server.getPort()));
+	}
+
+	private SocketChannel connectCoordinator() throws IOException{
+		return SocketChannel.open(new InetSocketAddress("localhost", server.getCoordinatorPort()));
+	}
+
+	private void putOutsideBet(ByteBuffer buffer, int betId, String betType, long betAmount){
+		int betTypeIndex = Arrays.asList(roulette.getOutsideBetTypes()).indexOf(betType);
+		buffer.putInt(14).put(RouletteServer.PLACE_OUTSIDE_BET).putInt(betId)
+			.put((byte) betTypeIndex).putLong(betAmount);
+	}
+
+	private void putInsideBet(ByteBuffer buffer, int betId, int[] insideBets, long betAmount){
+		buffer.putInt(14 + insideBets.length).put(RouletteServer.PLACE_INSIDE_BET).putInt(betId)
+			.put((byte) insideBets.length);
+		for(int number : insideBets){
+			buffer.put((byte) number);
+		}
+		buffer.putLong(betAmount);
+	}
+
+	private void send(SocketChannel client, ByteBuffer buffer) throws IOException{
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			client.write(buffer);
+		}
+	}
+
+	/**
+	 * @return buffer holding the given number of response frames
+	 */
+	private ByteBuffer receive(SocketChannel client, int noOfResponses) throws IOException{
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 17);
+		int frames = 0;
+		int position = 0;
+		while(frames < noOfResponses){
+			if(client.read(buffer) < 0){
+				fail("Connection closed");
+			}
+			while(buffer.position() >= position + 4 && buffer.position() >= position + 4 + buffer.getInt(position)){
+				position += 4 + buffer.getInt(position);
+				frames++;
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
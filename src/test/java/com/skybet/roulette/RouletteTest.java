@@ -2,8 +2,11 @@ package com.skybet.roulette;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
 
@@ -76,7 +79,7 @@ public class RouletteTest
     public void testDupBetIdError() throws Exception{
     	TestingRoulette testingRoulette = new TestingRoulette();
     	int betID = 123;
-    	double betAmount = 500;
+    	long betAmount = 500;
 		assertTrue(testingRoulette.placeBet(betID, "low", betAmount));
 		assertTrue(testingRoulette.placeBet(betID, "red", betAmount));
     }
@@ -91,7 +94,7 @@ public class RouletteTest
     	TestingRoulette testingRoulette = new TestingRoulette();
     	int betID = 123;
     	int spinToNumber = 5;
-    	double betAmount = 500;
+    	long betAmount = 500;
     	
     	try { 
     		assertTrue(testingRoulette.placeBet(betID, "low", betAmount));
@@ -294,6 +297,32 @@ public class RouletteTest
     	
     }
 	
+	/**
+	 * Test inside bets not matching the layout are rejected
+	 * @throws Exception 
+	 */
+	@Test
+    public void testInvalidInsideBet() throws Exception{
+    	TestingRoulette testingRoulette = new TestingRoulette();
+    	int betId = 1000;
+    	int betAmount = 100;
+    	
+    	assertFalse(testingRoulette.placeBet(betId++, new int[]{1,5}, betAmount));
+    	assertFalse(testingRoulette.placeBet(betId++, new int[]{3,4}, betAmount));
+    	assertFalse(testingRoulette.placeBet(betId++, new int[]{8,8}, betAmount));
+    	assertFalse(testingRoulette.placeBet(betId++, new int[]{37}, betAmount));
+    	assertFalse(testingRoulette.placeBet(betId++, new int[]{2,3,4}, betAmount));
+    	assertFalse(testingRoulette.placeBet(betId++, new int[]{}, betAmount));
+    	assertTrue(testingRoulette.placeBet(betId++, new int[]{0,1,2,3}, betAmount));
+    	assertTrue(testingRoulette.placeBet(betId++, new int[]{34,35,36}, betAmount));
+    	assertEquals(2, testingRoulette.betTable.size());
+    	
+    	Roulette americanRoulette = new Roulette(38);
+    	assertTrue(americanRoulette.placeBet(betId++, new int[]{37}, betAmount));
+    	assertTrue(americanRoulette.placeBet(betId++, new int[]{0,37,1,2,3}, betAmount));
+    	assertFalse(americanRoulette.placeBet(betId++, new int[]{0,1,2,3}, betAmount));
+    }
+	
     /**
      * Test undefined bet type and bet not found
      * @throws Exception 
@@ -370,6 +399,339 @@ public class RouletteTest
     	testingRoulette.pay(firstBetId);
     }
     
+	/**
+	 * Test settling a whole round at once
+	 * @throws Exception 
+	 */
+	@Test
+    public void testSettleRound() throws Exception{
+    	TestingRoulette testingRoulette = new TestingRoulette();
+    	int spinToNumber = 8;
+    	int betAmount = 100;
+    	
+    	assertTrue(testingRoulette.placeBet(1, "low", betAmount));
+    	assertTrue(testingRoulette.placeBet(2, "high", betAmount));
+    	assertTrue(testingRoulette.placeBet(3, new int[]{8}, betAmount));
+    	assertTrue(testingRoulette.placeBet(4, new int[]{7,8,10,11}, betAmount));
+    	
+    	testingRoulette.spin(spinToNumber);
+    	assertEquals(3, testingRoulette.getWinningBetIds().length);
+    	RoundSettlement settlement = testingRoulette.settleRound();
+    	
+    	assertEquals(spinToNumber, settlement.getWinningNumber());
+    	assertEquals(3, settlement.size());
+    	assertEquals(1, settlement.getNoOfLosingBets());
+    	long[] expected = new long[]{0, betAmount*2, 0, betAmount*36, betAmount*9};
+    	for(int i=0; i<settlement.size(); i++){
+    		assertEquals(expected[settlement.getBetIds()[i]], settlement.getPayouts()[i], 0);
+    	}
+    	assertEquals(betAmount*47, settlement.getTotalPayout(), 0);
+    	assertEquals(0, testingRoulette.betTable.size());
+    	assertEquals(0, testingRoulette.getWinningBetIds().length);
+    }
+	
+	/**
+	 * Test round phases, and bets of the next round taken while the spun round is being paid
+	 * @throws Exception 
+	 */
+	@Test
+    public void testRoundLifecycle() throws Exception{
+    	TestingRoulette testingRoulette = new TestingRoulette();
+    	int betAmount = 100;
+    	
+    	long firstRound = testingRoulette.getRound();
+    	assertEquals(RoundPhase.OPEN, testingRoulette.getPhase(firstRound));
+    	assertTrue(testingRoulette.placeBet(1, "low", betAmount));
+    	assertTrue(testingRoulette.placeBet(2, "high", betAmount));
+    	testingRoulette.closeBetting();
+    	assertEquals(RoundPhase.CLOSED, testingRoulette.getPhase(firstRound));
+    	assertFalse(testingRoulette.placeBet(3, "low", betAmount));
+    	
+    	testingRoulette.spin(5);
+    	long secondRound = testingRoulette.getRound();
+    	assertEquals(firstRound + 1, secondRound);
+    	assertEquals(RoundPhase.SPUN, testingRoulette.getPhase(firstRound));
+    	assertEquals(RoundPhase.OPEN, testingRoulette.getPhase(secondRound));
+    	
+    	//next round takes bets while the spun round is paid
+    	assertTrue(testingRoulette.placeBet(3, "high", betAmount));
+    	assertEquals(betAmount*2, testingRoulette.pay(1), 0);
+    	try {
+    		testingRoulette.spin(20);
+    		fail("Spun before previous round settled");
+    	} catch (IllegalStateException e) {}
+    	try {
+    		testingRoulette.pay(3);
+    		fail("Paid a bet of a round not spun yet");
+    	} catch (Exception e) {}
+    	
+    	assertEquals(0, testingRoulette.pay(2), 0);
+    	assertEquals(RoundPhase.SETTLED, testingRoulette.getPhase(firstRound));
+    	
+    	testingRoulette.spin(20);
+    	assertEquals(RoundPhase.SPUN, testingRoulette.getPhase(secondRound));
+    	RoundSettlement settlement = testingRoulette.settleRound();
+    	assertArrayEquals(new int[]{3}, settlement.getBetIds());
+    	assertEquals(RoundPhase.SETTLED, testingRoulette.getPhase(secondRound));
+    	assertEquals(0, testingRoulette.settleRound().size());
+    }
+	
+	/**
+	 * Test inside bets pay the same fixed ratios on both wheels, in exact minor units
+	 * @throws Exception 
+	 */
+	@Test
+    public void testInsideBetPayouts() throws Exception{
+    	long betAmount = 33;
+    	for(int noOfNumbers : new int[]{Roulette.EUROPEAN_TOTAL, Roulette.EUROPEAN_TOTAL + 1}){
+    		TestingRoulette testingRoulette = new TestingRoulette(noOfNumbers);
+    		assertTrue(testingRoulette.placeBet(1, new int[]{2}, betAmount));
+    		assertTrue(testingRoulette.placeBet(2, new int[]{2,3}, betAmount));
+    		assertTrue(testingRoulette.placeBet(3, new int[]{1,2,3}, betAmount));
+    		assertTrue(testingRoulette.placeBet(4, new int[]{1,2,4,5}, betAmount));
+    		assertTrue(testingRoulette.placeBet(5, new int[]{1,2,3,4,5,6}, betAmount));
+    		testingRoulette.spin(2);
+    		assertEquals(betAmount*36, testingRoulette.pay(1));
+    		assertEquals(betAmount*18, testingRoulette.pay(2));
+    		assertEquals(betAmount*12, testingRoulette.pay(3));
+    		assertEquals(betAmount*9, testingRoulette.pay(4));
+    		assertEquals(betAmount*6, testingRoulette.pay(5));
+    	}
+    	TestingRoulette american = new TestingRoulette(Roulette.EUROPEAN_TOTAL + 1);
+    	assertTrue(american.placeBet(1, new int[]{0,1,2,3,Roulette.EUROPEAN_TOTAL}, betAmount));
+    	american.spin(Roulette.EUROPEAN_TOTAL);
+    	assertEquals(betAmount*7, american.settleRound().getTotalPayout());
+    }
+	
+	/**
+	 * Test the liability of each number and the table limit
+	 * @throws Exception 
+	 */
+	@Test
+    public void testLiability() throws Exception{
+    	TestingRoulette testingRoulette = new TestingRoulette();
+    	int betAmount = 100;
+    	
+    	assertTrue(testingRoulette.placeBet(1, "low", betAmount));
+    	assertTrue(testingRoulette.placeBet(2, new int[]{8}, betAmount));
+    	assertTrue(testingRoulette.placeBet(3, new int[]{8,9}, betAmount));
+    	assertEquals(betAmount*2 + betAmount*36 + betAmount*18, testingRoulette.getLiability(8), 0);
+    	assertEquals(betAmount*2 + betAmount*18, testingRoulette.getLiability(9), 0);
+    	assertEquals(betAmount*2, testingRoulette.getLiability(1), 0);
+    	assertEquals(0, testingRoulette.getLiability(0), 0);
+    	assertEquals(betAmount*56, testingRoulette.getMaxExposure(), 0);
+    	
+    	//refused bets leave the liability untouched
+    	testingRoulette.setTableLimit(betAmount*60);
+    	assertFalse(testingRoulette.placeBet(4, "even", betAmount*3));
+    	assertTrue(testingRoulette.placeBet(4, "odd", betAmount*3));
+    	assertEquals(betAmount*56, testingRoulette.getLiability(8), 0);
+    	assertEquals(betAmount*26, testingRoulette.getLiability(9), 0);
+    	try {
+    		testingRoulette.placeBet(4, "high", betAmount);
+    		fail("Duplicated betId accepted");
+    	} catch (Exception e) {}
+    	assertEquals(0, testingRoulette.getLiability(20), 0);
+    	
+    	//next round starts with no liability, paid bets are taken off the spun round
+    	testingRoulette.spin(8);
+    	assertEquals(0, testingRoulette.getMaxExposure(), 0);
+    	assertTrue(testingRoulette.placeBet(5, new int[]{8}, betAmount));
+    	assertEquals(betAmount*36, testingRoulette.getMaxExposure(), 0);
+    	assertEquals(betAmount*36, testingRoulette.pay(2), 0);
+    	assertEquals(betAmount*20, testingRoulette.spunBetTable.getLiability(8), 0);
+    	testingRoulette.settleRound();
+    	testingRoulette.spin(8);
+    	testingRoulette.settleRound();
+    	testingRoulette.spin(8);
+    	assertEquals(0, testingRoulette.getMaxExposure(), 0);
+    }
+	
+	/**
+	 * Test bets of amounts not positive or with payouts overflowing are refused, so they cannot
+	 * lower the liability of a number under the table limit
+	 * @throws Exception 
+	 */
+	@Test
+    public void testBetAmountRefused() throws Exception{
+    	TestingRoulette testingRoulette = new TestingRoulette();
+    	long betAmount = 100;
+    	testingRoulette.setTableLimit(betAmount*36);
+    	assertTrue(testingRoulette.placeBet(1, new int[]{8}, betAmount));
+    	assertFalse(testingRoulette.placeBet(2, new int[]{8}, -betAmount));
+    	assertFalse(testingRoulette.placeBet(3, "even", 0));
+    	assertFalse(testingRoulette.placeBet(4, new int[]{8}, betAmount));
+    	assertEquals(betAmount*36, testingRoulette.getLiability(8));
+    	
+    	testingRoulette.setTableLimit(Long.MAX_VALUE);
+    	assertFalse(testingRoulette.placeBet(5, new int[]{9}, Long.MAX_VALUE / 10));
+    	assertFalse(testingRoulette.placeBet(6, "odd", Long.MAX_VALUE / 2 + 1));
+    	assertEquals(0, testingRoulette.getLiability(9));
+    	assertTrue(testingRoulette.placeBet(7, "odd", Long.MAX_VALUE / 3));
+    	assertFalse(testingRoulette.placeBet(8, "odd", Long.MAX_VALUE / 3));
+    	assertEquals(Long.MAX_VALUE / 3 * 2, testingRoulette.getLiability(9));
+    	
+    	byte[] statuses = new byte[3];
+    	assertEquals(0, testingRoulette.placeBets(new int[]{9, 10, 11}, new String[]{"red", "black", null}, 
+    			new int[][]{null, null, {8}}, new long[]{-betAmount, 0, Long.MAX_VALUE / 10}, statuses));
+    	assertArrayEquals(new byte[]{Roulette.BET_INVALID, Roulette.BET_INVALID, Roulette.BET_OVER_LIMIT}, statuses);
+    	
+    	ByteBuffer encoded = ByteBuffer.allocate(64);
+    	encoded.putInt(12).put((byte) Arrays.asList(testingRoulette.getOutsideBetTypes()).indexOf("red")).putLong(-betAmount);
+    	encoded.flip();
+    	statuses = new byte[1];
+    	assertEquals(0, testingRoulette.placeBets(encoded, statuses));
+    	assertEquals(Roulette.BET_INVALID, statuses[0]);
+    	assertEquals(betAmount*36, testingRoulette.getLiability(8));
+    }
+	
+	/**
+	 * Test a table keeping its bets off heap places, pays and settles them the same way
+	 * @throws Exception 
+	 */
+	@Test
+    public void testOffHeapBets() throws Exception{
+    	long betAmount = 500;
+    	Roulette roulette = new Roulette(WheelLayout.EUROPEAN, 4, true);
+    	roulette.setRandomSource(bound -> 8);
+    	assertTrue(roulette.placeBet(1, "even", betAmount));
+    	assertTrue(roulette.placeBet(2, "odd", betAmount));
+    	assertTrue(roulette.placeBet(3, new int[]{8,11}, betAmount));
+    	assertTrue(roulette.placeBet(4, "basket", betAmount));
+    	roulette.spin();
+    	assertEquals(betAmount*18, roulette.pay(3));
+    	RoundSettlement settlement = roulette.settleRound();
+    	assertArrayEquals(new int[]{1}, settlement.getBetIds());
+    	assertEquals(betAmount*2, settlement.getTotalPayout());
+    	assertEquals(2, settlement.getNoOfLosingBets());
+    	assertTrue(roulette.placeBet(1, "red", betAmount));
+    }
+	
+	/**
+	 * Test settling a round sums up the stakes and payouts of each player, leaving out bets of no player
+	 * @throws Exception 
+	 */
+	@Test
+    public void testPlayerSettlement() throws Exception{
+    	long betAmount = 100;
+    	TestingRoulette testingRoulette = new TestingRoulette();
+    	assertTrue(testingRoulette.placeBet(1, 7, "even", betAmount));
+    	assertTrue(testingRoulette.placeBet(2, 7, "odd", betAmount));
+    	assertTrue(testingRoulette.placeBet(3, 7, new int[]{8}, betAmount));
+    	assertTrue(testingRoulette.placeBet(4, 9, "high", betAmount));
+    	assertTrue(testingRoulette.placeBet(5, "low", betAmount));
+    	int noOfPlayers = 1000;
+    	int[] betIds = new int[noOfPlayers];
+    	int[] playerIds = new int[noOfPlayers];
+    	String[] betTypes = new String[noOfPlayers];
+    	long[] betAmounts = new long[noOfPlayers];
+    	for(int i=0; i<noOfPlayers; i++){
+    		betIds[i] = 100 + i;
+    		playerIds[i] = 1000 + i;
+    		betTypes[i] = i % 2 == 0 ? "dozen1" : "dozen2";
+    		betAmounts[i] = betAmount;
+    	}
+    	assertEquals(noOfPlayers, testingRoulette.placeBets(betIds, playerIds, betTypes, new int[noOfPlayers][], 
+    			betAmounts, new byte[noOfPlayers]));
+    	testingRoulette.spin(8);
+    	RoundSettlement settlement = testingRoulette.settleRound();
+
+    	assertEquals(2 + noOfPlayers, settlement.getPlayerIds().length);
+    	assertEquals(3 + noOfPlayers / 2, settlement.size());
+    	assertEquals(2 + noOfPlayers / 2, settlement.getNoOfLosingBets());
+    	for(int i=0; i<settlement.getPlayerIds().length; i++){
+    		int playerId = settlement.getPlayerIds()[i];
+    		if(playerId == 7){
+    			assertEquals(betAmount*3, settlement.getPlayerStakes()[i]);
+    			assertEquals(betAmount*38, settlement.getPlayerPayouts()[i]);
+    			assertEquals(betAmount*35, settlement.getPlayerNet(i));
+    		} else if(playerId == 9){
+    			assertEquals(0, settlement.getPlayerPayouts()[i]);
+    			assertEquals(-betAmount, settlement.getPlayerNet(i));
+    		} else {
+    			assertEquals(playerId % 2 == 0 ? betAmount*2 : -betAmount, settlement.getPlayerNet(i));
+    		}
+    	}
+    }
+	
+	/**
+	 * Test player bets paid one by one before settling still count in the player totals of the round
+	 * @throws Exception 
+	 */
+	@Test
+    public void testPlayerSettlementAfterPay() throws Exception{
+    	long betAmount = 100;
+    	TestingRoulette testingRoulette = new TestingRoulette();
+    	assertTrue(testingRoulette.placeBet(1, 7, "even", betAmount));
+    	assertTrue(testingRoulette.placeBet(2, 7, new int[]{8}, betAmount));
+    	assertTrue(testingRoulette.placeBet(3, 9, "odd", betAmount));
+    	assertTrue(testingRoulette.placeBet(4, "low", betAmount));
+    	testingRoulette.spin(8);
+    	assertEquals(betAmount*36, testingRoulette.pay(2));
+    	assertEquals(0, testingRoulette.pay(3));
+    	assertEquals(betAmount*2, testingRoulette.pay(4));
+    	RoundSettlement settlement = testingRoulette.settleRound();
+
+    	assertArrayEquals(new int[]{1}, settlement.getBetIds());
+    	assertEquals(2, settlement.getNoOfPlayers());
+    	for(int i=0; i<settlement.getNoOfPlayers(); i++){
+    		if(settlement.getPlayerId(i) == 7){
+    			assertEquals(betAmount*2, settlement.getPlayerStake(i));
+    			assertEquals(betAmount*38, settlement.getPlayerPayout(i));
+    		} else {
+    			assertEquals(9, settlement.getPlayerId(i));
+    			assertEquals(-betAmount, settlement.getPlayerNet(i));
+    		}
+    	}
+    	assertEquals(0, testingRoulette.settleRound().getNoOfPlayers());
+    }
+	
+	/**
+	 * Test placing a batch of bets, with a status for each bet
+	 * @throws Exception 
+	 */
+	@Test
+    public void testPlaceBets() throws Exception{
+    	TestingRoulette testingRoulette = new TestingRoulette();
+    	int betAmount = 100;
+    	testingRoulette.setTableLimit(betAmount*60);
+    	assertTrue(testingRoulette.placeBet(1, "red", betAmount));
+    	
+    	int[] betIds = {2, 3, 4, 4, 5, 1, 6, 7};
+    	String[] betTypes = {"black", null, "blue", "low", null, "high", null, null};
+    	int[][] insideBets = {null, {7,8,10,11}, null, null, {8,12}, null, {8}, {8}};
+    	long[] betAmounts = {betAmount, betAmount, betAmount, betAmount, betAmount, betAmount, betAmount, betAmount};
+    	byte[] statuses = new byte[betIds.length];
+    	assertEquals(4, testingRoulette.placeBets(betIds, betTypes, insideBets, betAmounts, statuses));
+    	assertArrayEquals(new byte[]{Roulette.BET_ACCEPTED, Roulette.BET_ACCEPTED, Roulette.BET_INVALID, 
+    			Roulette.BET_ACCEPTED, Roulette.BET_INVALID, Roulette.BET_DUPLICATE, Roulette.BET_ACCEPTED, 
+    			Roulette.BET_OVER_LIMIT}, statuses);
+    	assertEquals(5, testingRoulette.betTable.size());
+    	assertEquals(betAmount*2 + betAmount*9 + betAmount*2 + betAmount*36, testingRoulette.getLiability(8), 0);
+    	
+    	ByteBuffer encoded = ByteBuffer.allocate(256);
+    	encoded.putInt(8).put((byte) Arrays.asList(testingRoulette.getOutsideBetTypes()).indexOf("even")).putLong(betAmount);
+    	encoded.putInt(9).put((byte) Roulette.INSIDE_BET).put((byte) 2).put((byte) 0).put((byte) 1).putLong(betAmount);
+    	encoded.putInt(10).put((byte) Roulette.INSIDE_BET).put((byte) 2).put((byte) 1).put((byte) 5).putLong(betAmount);
+    	encoded.putInt(2).put((byte) 99).putLong(betAmount);
+    	encoded.flip();
+    	statuses = new byte[4];
+    	assertEquals(2, testingRoulette.placeBets(encoded, statuses));
+    	assertArrayEquals(new byte[]{Roulette.BET_ACCEPTED, Roulette.BET_ACCEPTED, Roulette.BET_INVALID, 
+    			Roulette.BET_INVALID}, statuses);
+    	
+    	testingRoulette.closeBetting();
+    	statuses = new byte[1];
+    	assertEquals(0, testingRoulette.placeBets(new int[]{11}, new String[]{"odd"}, null, new long[]{betAmount}, statuses));
+    	assertEquals(Roulette.BET_CLOSED, statuses[0]);
+    	assertEquals(7, testingRoulette.betTable.size());
+    	
+    	testingRoulette.spin(8);
+    	assertEquals(betAmount*36, testingRoulette.pay(6), 0);
+    	assertEquals(betAmount*2, testingRoulette.pay(8), 0);
+    	assertEquals(0, testingRoulette.pay(9), 0);
+    }
+	
     /**
      * Test multi-thread case. (Which makes much more sense in real world!!)
      * @throws Exception 
@@ -377,58 +739,156 @@ public class RouletteTest
 	@Test
 	public void testMultiThread() throws Exception{
     	TestingRoulette testingRoulette = new TestingRoulette();
-    	int firstBetId = 0;
-    	int betId = firstBetId;
-    	int noOfBetsToPlace = 10000;
+    	int noOfThreads = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+    	int noOfBetsPerThread = 20000;
+    	int noOfSharedBets = 1000;
+    	CountDownLatch startSignal = new CountDownLatch(1);
 
-    	ArrayList<Thread> threadList = new ArrayList<Thread>();
-    	for(int i=0; i<noOfBetsToPlace; i++){
-    		threadList.add(new TestingPlaceBetThread(betId++, testingRoulette));
+    	ArrayList<TestingPlaceBetThread> threadList = new ArrayList<TestingPlaceBetThread>();
+    	for(int i=0; i<noOfThreads; i++){
+    		threadList.add(new TestingPlaceBetThread(noOfSharedBets + i * noOfBetsPerThread, noOfBetsPerThread, 
+    				noOfSharedBets, testingRoulette, startSignal));
     	}
     	for(Thread t : threadList){
     		t.start();
     	}
+    	startSignal.countDown();
     	
-    	try {
-			Thread.sleep(2000);
-		} catch (InterruptedException e) {e.printStackTrace();}
+    	int noOfPlaced = 0;
+    	int noOfDuplicated = 0;
+    	for(TestingPlaceBetThread t : threadList){
+    		t.join();
+    		assertNull(t.error);
+    		noOfPlaced += t.noOfPlaced;
+    		noOfDuplicated += t.noOfDuplicated;
+    	}
 
-    	testingRoulette.spin();
-    	betId = firstBetId;
-    	
+    	//every shared bet ID accepted exactly once, no bet lost
+    	int noOfBetsToPlace = noOfThreads * noOfBetsPerThread + noOfSharedBets;
+    	assertEquals(noOfBetsToPlace, noOfPlaced);
+    	assertEquals(noOfSharedBets * (noOfThreads - 1), noOfDuplicated);
     	assertEquals(noOfBetsToPlace, testingRoulette.betTable.size());
+
+    	testingRoulette.spin();
+    	RoundSettlement settlement = testingRoulette.settleRound();
+    	assertEquals(noOfBetsToPlace, settlement.size() + settlement.getNoOfLosingBets());
+    	assertEquals(0, testingRoulette.betTable.size());
 	}
 
 	/**
-	 * Thread to place a bet
+	 * Test bets placed while rounds are spun and settled leave the liability of the round taking bets
+	 * matching its bets, with no bet added to a round without its liability or the other way around
+	 * @throws Exception 
+	 */
+	@Test(timeout = 60000)
+	public void testLiabilityWhileSpinning() throws Exception{
+		Roulette roulette = new Roulette();
+		long betAmount = 100;
+		int noOfThreads = 4;
+		int noOfBetsPerThread = 50000;
+		Thread[] threads = new Thread[noOfThreads];
+		Exception[] errors = new Exception[noOfThreads];
+		for(int t=0; t<noOfThreads; t++){
+			int thread = t;
+			threads[t] = new Thread(() -> {
+				try {
+					for(int i=0; i<noOfBetsPerThread; i+=2){
+						int betId = thread * noOfBetsPerThread + i;
+						roulette.placeBet(betId, "red", betAmount);
+						roulette.placeBets(new int[]{betId + 1}, new String[]{"red"}, null, new long[]{betAmount}, 
+								new byte[1]);
+					}
+				} catch (Exception e) {
+					errors[thread] = e;
+				}
+			});
+			threads[t].start();
+		}
+		boolean placing = true;
+		while(placing){
+			roulette.spin();
+			roulette.settleRound();
+			placing = false;
+			for(Thread thread : threads){
+				placing |= thread.isAlive();
+			}
+		}
+		for(Thread thread : threads){
+			thread.join();
+		}
+		for(Exception error : errors){
+			assertNull(error);
+		}
+		//1 is red, 0 is covered by no bet
+		assertEquals(betAmount * 2 * roulette.betTable.size(), roulette.getLiability(1));
+		assertEquals(0, roulette.getLiability(0));
+	}
+
+	/**
+	 * Thread placing a range of its own bets, mixed with bets on IDs shared by all threads
 	 * @author benny
 	 *
 	 */
     class TestingPlaceBetThread extends Thread{
-    	private int betId;
+    	private int firstBetId;
+    	private int noOfBets;
+    	private int noOfSharedBets;
+    	private CountDownLatch startSignal;
     	Random rnd = new Random();
     	private Roulette testingRoulette;
-    	public TestingPlaceBetThread(int betId, Roulette testingRoulette){
-    		this.betId = betId;
+    	int noOfPlaced;
+    	int noOfDuplicated;
+    	Exception error;
+    	public TestingPlaceBetThread(int firstBetId, int noOfBets, int noOfSharedBets, 
+    			Roulette testingRoulette, CountDownLatch startSignal){
+    		this.firstBetId = firstBetId;
+    		this.noOfBets = noOfBets;
+    		this.noOfSharedBets = noOfSharedBets;
     		this.testingRoulette = testingRoulette;
+    		this.startSignal = startSignal;
     	}
     	public void run(){
     		try {
-				sleep(new Long(rnd.nextInt(100)));
-				testingRoulette.placeBet(betId, new int[]{rnd.nextInt(Roulette.EUROPEAN_TOTAL)}, 100);
+    			startSignal.await();
+    			for(int i=0; i<noOfBets; i++){
+    				if(i < noOfSharedBets){
+    					placeSharedBet(i);
+    				}
+    				boolean placed = i%2 == 0 
+    						? testingRoulette.placeBet(firstBetId + i, new int[]{rnd.nextInt(Roulette.EUROPEAN_TOTAL)}, 100)
+    						: testingRoulette.placeBet(firstBetId + i, "red", 100);
+    				if(placed)	noOfPlaced++;
+    			}
 			} catch (Exception e) {
-				e.printStackTrace();
+				error = e;
 			}
     	}
+    	private void placeSharedBet(int betId){
+    		try {
+    			if(testingRoulette.placeBet(betId, "black", 100))	noOfPlaced++;
+    		} catch (Exception e) {
+    			noOfDuplicated++;
+    		}
+    	}
     }
     
     /**
      * Roulette for testing purpose. allowing to spin to any given number
      */
     class TestingRoulette extends Roulette{
+    	private int spinToNumber = -1;
+    	public TestingRoulette(){
+    		super();
+    	}
+    	public TestingRoulette(int noOfNumbers){
+    		super(noOfNumbers);
+    	}
     	public int spin(int spinToNumber){
-    		currentNumber = spinToNumber;
-    		return currentNumber;
+    		this.spinToNumber = spinToNumber;
+    		return spin();
+    	}
+    	protected int drawNumber(){
+    		return spinToNumber < 0 ? super.drawNumber() : spinToNumber;
     	}
     }
 }
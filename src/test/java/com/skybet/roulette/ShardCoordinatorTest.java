@@ -0,0 +1,292 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for ShardCoordinator, with every shard a RouletteServer process over loopback
+ */
+public class ShardCoordinatorTest
+{
+	private static final int NO_OF_SHARDS = 3;
+
+	private final List<Process> shardProcesses = new ArrayList<Process>();
+	private final List<InetSocketAddress> bettorAddresses = new ArrayList<InetSocketAddress>();
+	private final List<InetSocketAddress> shardAddresses = new ArrayList<InetSocketAddress>();
+
+	@Before
+	public void startShards() throws IOException{
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		for(int i=0; i<NO_OF_SHARDS; i++){
+			Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					RouletteServer.class.getName(), "0").redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			shardProcesses.add(process);
+			BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			String port = output.readLine();
+			String coordinatorPort = output.readLine();
+			assertNotNull("Shard " + i + " did not start", coordinatorPort);
+			bettorAddresses.add(new InetSocketAddress("localhost", Integer.parseInt(port)));
+			shardAddresses.add(new InetSocketAddress("localhost", Integer.parseInt(coordinatorPort)));
+		}
+	}
+
+	@After
+	public void stopShards() throws Exception{
+		for(Process process : shardProcesses){
+			process.getOutputStream().close();
+		}
+		for(Process process : shardProcesses){
+			if(!process.waitFor(10, TimeUnit.SECONDS)){
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	/**
+	 * Test bets split over the shards are spun, settled and exposed as on a single table
+	 * @throws Exception
+	 */
+	@Test
+	public void testShardedRound() throws Exception{
+		long betAmount = 100;
+		int noOfBets = 300;
+		Roulette single = new Roulette();
+		single.setRandomSource(bound -> 8);
+		try(ShardCoordinator coordinator = new ShardCoordinator(shardAddresses, Roulette.EUROPEAN_TOTAL)){
+			coordinator.setRandomSource(bound -> 8);
+			int[] betsPerShard = new int[NO_OF_SHARDS];
+			for(int betId=0; betId<noOfBets; betId++){
+				String betType = Roulette.OUTSIDE_BET_TYPES.get(betId % Roulette.OUTSIDE_BET_TYPES.size());
+				assertEquals(RouletteServer.OK, coordinator.shardFor(betId).placeBet(betId, betType, betAmount));
+				assertTrue(single.placeBet(betId, betType, betAmount));
+				betsPerShard[ShardCoordinator.shardOf(betId, NO_OF_SHARDS)]++;
+			}
+			assertEquals(RouletteServer.OK, coordinator.shardFor(noOfBets).placeBet(noOfBets, new int[]{8,9}, betAmount));
+			assertTrue(single.placeBet(noOfBets, new int[]{8,9}, betAmount));
+			assertEquals(RouletteServer.DUPLICATE, coordinator.shardFor(1).placeBet(1, "red", betAmount));
+			for(int bets : betsPerShard){
+				assertTrue(bets > 0);
+			}
+
+			long[] liabilities = coordinator.getLiabilities();
+			for(int number=0; number<Roulette.EUROPEAN_TOTAL; number++){
+				assertEquals(single.getLiability(number), liabilities[number]);
+			}
+			assertEquals(single.getMaxExposure(), coordinator.getMaxExposure());
+
+			assertEquals(8, coordinator.spin());
+			single.spin();
+			RoundSettlement expected = single.settleRound();
+			RoundTotals totals = coordinator.settleRound();
+			assertEquals(1, totals.getRound());
+			assertEquals(8, totals.getWinningNumber());
+			assertEquals(expected.getTotalPayout(), totals.getTotalPayout());
+			assertEquals(expected.size(), totals.getNoOfWinningBets());
+			assertEquals(expected.getNoOfLosingBets(), totals.getNoOfLosingBets());
+			for(int shard=0; shard<NO_OF_SHARDS; shard++){
+				assertEquals(8, coordinator.getShard(shard).getSpinResult().getWinningNumber());
+			}
+
+			assertEquals(RouletteServer.OK, coordinator.shardFor(1).placeBet(1, "red", betAmount));
+			assertEquals(betAmount * 2, coordinator.getLiabilities()[1]);
+			assertEquals(8, coordinator.spin());
+			assertEquals(2, coordinator.settleRound().getRound());
+		}
+	}
+
+	/**
+	 * Test a bettor connected to the address of a shard cannot spin it
+	 * @throws Exception
+	 */
+	@Test
+	public void testBettorCannotSpin() throws Exception{
+		try(RouletteClient bettor = new RouletteClient(bettorAddresses.get(0))){
+			assertEquals(RouletteServer.OK, bettor.placeBet(1, new int[]{8}, 100));
+			try {
+				bettor.closeBetting();
+				fail("Bettor closed betting");
+			} catch (IllegalStateException e) {
+			}
+			try {
+				bettor.spinTo(8);
+				fail("Bettor spun the wheel");
+			} catch (IllegalStateException e) {
+			}
+			assertNull(bettor.getSpinResult());
+		}
+	}
+
+	/**
+	 * Test shards on different rounds are caught before any is spun, and a spin refused by a shard part way
+	 * is resumed to the same number without spinning the other shards twice
+	 * @throws Exception
+	 */
+	@Test
+	public void testPartialSpin() throws Exception{
+		FailingRoulette[] roulettes = new FailingRoulette[NO_OF_SHARDS];
+		List<RouletteServer> servers = new ArrayList<RouletteServer>();
+		List<InetSocketAddress> coordinatorAddresses = new ArrayList<InetSocketAddress>();
+		try {
+			for(int i=0; i<NO_OF_SHARDS; i++){
+				roulettes[i] = new FailingRoulette();
+				RouletteServer server = new RouletteServer(roulettes[i], new InetSocketAddress("localhost", 0), 
+						new InetSocketAddress("localhost", 0), 1);
+				servers.add(server);
+				coordinatorAddresses.add(new InetSocketAddress("localhost", server.getCoordinatorPort()));
+			}
+			try(ShardCoordinator coordinator = new ShardCoordinator(coordinatorAddresses, Roulette.EUROPEAN_TOTAL)){
+				coordinator.setRandomSource(bound -> 8);
+				roulettes[2].spin();
+				try {
+					coordinator.spin();
+					fail("Shards out of step spun");
+				} catch (IllegalStateException e) {
+				}
+				assertEquals(1, roulettes[0].getRound());
+				assertEquals(1, roulettes[1].getRound());
+				roulettes[0].spin();
+				roulettes[1].spin();
+
+				roulettes[1].failNextSpin = true;
+				try {
+					coordinator.spin();
+					fail("Spin refused by a shard went through");
+				} catch (IllegalStateException e) {
+				}
+				assertEquals(3, roulettes[0].getRound());
+				assertEquals(2, roulettes[1].getRound());
+				try {
+					coordinator.settleRound();
+					fail("Round settled before every shard was spun");
+				} catch (IllegalStateException e) {
+				}
+				coordinator.setRandomSource(bound -> 17);
+				assertEquals(8, coordinator.spin());
+				for(FailingRoulette roulette : roulettes){
+					assertEquals(3, roulette.getRound());
+					assertEquals(8, roulette.getCurrentNumber());
+				}
+				assertEquals(2, coordinator.settleRound().getRound());
+			}
+		} finally {
+			for(RouletteServer server : servers){
+				server.close();
+			}
+		}
+	}
+
+	/**
+	 * Test a settlement refused by a shard part way is resumed without settling the other shards twice
+	 * @throws Exception
+	 */
+	@Test
+	public void testPartialSettle() throws Exception{
+		long betAmount = 100;
+		FailingRoulette[] roulettes = new FailingRoulette[NO_OF_SHARDS];
+		List<RouletteServer> servers = new ArrayList<RouletteServer>();
+		List<InetSocketAddress> coordinatorAddresses = new ArrayList<InetSocketAddress>();
+		try {
+			for(int i=0; i<NO_OF_SHARDS; i++){
+				roulettes[i] = new FailingRoulette();
+				RouletteServer server = new RouletteServer(roulettes[i], new InetSocketAddress("localhost", 0), 
+						new InetSocketAddress("localhost", 0), 1);
+				servers.add(server);
+				coordinatorAddresses.add(new InetSocketAddress("localhost", server.getCoordinatorPort()));
+			}
+			try(ShardCoordinator coordinator = new ShardCoordinator(coordinatorAddresses, Roulette.EUROPEAN_TOTAL)){
+				coordinator.setRandomSource(bound -> 8);
+				int noOfBets = 30;
+				for(int betId=0; betId<noOfBets; betId++){
+					assertEquals(RouletteServer.OK, coordinator.shardFor(betId).placeBet(betId, new int[]{8}, betAmount));
+				}
+				assertEquals(8, coordinator.spin());
+
+				roulettes[1].failNextSettle = true;
+				try {
+					coordinator.settleRound();
+					fail("Settlement refused by a shard went through");
+				} catch (IllegalStateException e) {
+				}
+				assertEquals(RoundPhase.SETTLED, roulettes[0].getPhase(1));
+				assertEquals(RoundPhase.SPUN, roulettes[2].getPhase(1));
+				try {
+					coordinator.spin();
+					fail("Spun before every shard was settled");
+				} catch (IllegalStateException e) {
+				}
+				RoundTotals totals = coordinator.settleRound();
+				assertEquals(1, totals.getRound());
+				assertEquals(noOfBets, totals.getNoOfWinningBets());
+				assertEquals(noOfBets * betAmount * 36, totals.getTotalPayout());
+				for(FailingRoulette roulette : roulettes){
+					assertEquals(RoundPhase.SETTLED, roulette.getPhase(1));
+				}
+				RoundTotals shardTotals = coordinator.getShard(0).settleRound();
+				assertEquals(1, shardTotals.getRound());
+				assertTrue(shardTotals.getNoOfWinningBets() > 0);
+			}
+		} finally {
+			for(RouletteServer server : servers){
+				server.close();
+			}
+		}
+	}
+
+	/**
+	 * Refuses the next spin or settlement when asked to
+	 */
+	private static class FailingRoulette extends Roulette {
+		volatile boolean failNextSpin;
+		volatile boolean failNextSettle;
+
+		@Override
+		synchronized int spinTo(int winningNumber) {
+			if(failNextSpin){
+				failNextSpin = false;
+				throw new IllegalStateException("Spin failed");
+			}
+			return super.spinTo(winningNumber);
+		}
+
+		@Override
+		public synchronized RoundSettlement settleRound() {
+			if(failNextSettle){
+				failNextSettle = false;
+				throw new IllegalStateException("Settlement failed");
+			}
+			return super.settleRound();
+		}
+	}
+
+	/**
+	 * Test no shard is spun again before the round is settled on every shard
+	 * @throws Exception
+	 */
+	@Test
+	public void testSpinBeforeSettled() throws Exception{
+		try(ShardCoordinator coordinator = new ShardCoordinator(shardAddresses, Roulette.EUROPEAN_TOTAL)){
+			assertEquals(RouletteServer.OK, coordinator.shardFor(5).placeBet(5, "red", 100));
+			coordinator.spin();
+			try {
+				coordinator.spin();
+				fail("Spun before the round was settled");
+			} catch (IllegalStateException e) {
+			}
+			assertEquals(1, coordinator.settleRound().getRound());
+			coordinator.spin();
+			assertEquals(2, coordinator.settleRound().getRound());
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit test for Simulation
+ */
+public class SimulationTest
+{
+	/**
+	 * z value of a 99.9% confidence interval, to keep the seeded test away from the edge
+	 */
+	private static final double Z_999 = 3.290527;
+
+	/**
+	 * Estimated returns of every bet match the exact returns of the payout rules
+	 */
+	@Test
+	public void testEuropeanReturns(){
+		Roulette roulette = new Roulette();
+		long noOfSpins = 50000000;
+		Map<String, BetStatistics> statistics = new Simulation(roulette).run(noOfSpins, 20170601L);
+		
+		assertEquals(roulette.getOutsideBetTypes().length + 5, statistics.size());
+		for(BetStatistics betStatistics : statistics.values()){
+			assertEquals(noOfSpins, betStatistics.getNoOfSpins());
+			assertTrue(betStatistics.toString(), betStatistics.getConfidenceLow(Z_999) <= 36.0/37 
+					|| betStatistics.getBetName().equals("basket"));
+			assertTrue(betStatistics.toString(), betStatistics.getConfidenceHigh(Z_999) >= 36.0/37 
+					|| betStatistics.getBetName().equals("basket"));
+		}
+		//basket pays 7 for 4 numbers
+		BetStatistics basket = statistics.get("basket");
+		assertEquals(28.0/37, basket.getMeanReturn(), basket.getConfidenceHalfWidth(Z_999));
+		
+		//even money bet: 18/37 to get 2, variance 4p - (2p)^2
+		BetStatistics red = statistics.get("red");
+		double p = 18.0/37;
+		assertEquals(4*p - 4*p*p, red.getVariance(), 0.001);
+	}
+	
+	/**
+	 * The same seed gives the same result
+	 */
+	@Test
+	public void testSeeded(){
+		Simulation simulation = new Simulation(new Roulette());
+		assertEquals(simulation.run(10000000, 42).get("straight").getMeanReturn(), 
+				simulation.run(10000000, 42).get("straight").getMeanReturn(), 0);
+	}
+}
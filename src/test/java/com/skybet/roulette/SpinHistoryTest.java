@@ -0,0 +1,89 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit test for SpinHistory
+ */
+public class SpinHistoryTest
+{
+	/**
+	 * Test counts and the chi-square statistic follow the window as old spins roll out
+	 */
+	@Test
+	public void testRollingWindow(){
+		int noOfNumbers = Roulette.EUROPEAN_TOTAL;
+		int capacity = 1000;
+		SpinHistory history = new SpinHistory(noOfNumbers, capacity);
+		assertEquals(0, history.getChiSquare(), 0);
+
+		Random random = new Random(20170601);
+		int[] spins = new int[5000];
+		for(int i=0; i<spins.length; i++){
+			spins[i] = random.nextInt(noOfNumbers);
+			history.record(spins[i]);
+			if(i % 777 == 0 || i == spins.length - 1){
+				int size = Math.min(i + 1, capacity);
+				int[] counts = new int[noOfNumbers];
+				for(int j=i+1-size; j<=i; j++){
+					counts[spins[j]]++;
+				}
+				double expected = (double) size / noOfNumbers;
+				double chiSquare = 0;
+				for(int number=0; number<noOfNumbers; number++){
+					assertEquals(counts[number], history.getCount(number));
+					chiSquare += (counts[number] - expected) * (counts[number] - expected) / expected;
+				}
+				assertEquals(size, history.size());
+				assertEquals(chiSquare, history.getChiSquare(), 1e-9);
+			}
+		}
+		assertEquals(spins.length, history.getNoOfSpins());
+		assertEquals(noOfNumbers - 1, history.getDegreesOfFreedom());
+
+		int[] last = new int[3];
+		assertEquals(3, history.getLast(last));
+		assertArrayEquals(new int[]{spins[4999], spins[4998], spins[4997]}, last);
+	}
+
+	/**
+	 * Test hot and cold numbers, and the last numbers of a history not full yet
+	 */
+	@Test
+	public void testHotAndCold(){
+		SpinHistory history = new SpinHistory(5, 100);
+		int[] spins = {3, 3, 3, 1, 1, 4, 0, 0, 3};
+		for(int number : spins){
+			history.record(number);
+		}
+		int[] hot = new int[3];
+		assertEquals(3, history.getHotNumbers(hot));
+		assertArrayEquals(new int[]{3, 0, 1}, hot);
+		int[] cold = new int[2];
+		history.getColdNumbers(cold);
+		assertArrayEquals(new int[]{2, 4}, cold);
+
+		int[] last = new int[20];
+		assertEquals(spins.length, history.getLast(last));
+		assertEquals(3, last[0]);
+		assertEquals(3, last[spins.length - 1]);
+	}
+
+	/**
+	 * Test a table records every spin
+	 */
+	@Test
+	public void testRouletteHistory(){
+		Roulette roulette = new Roulette();
+		roulette.setRandomSource(bound -> 17);
+		for(int i=0; i<10; i++){
+			roulette.spin();
+		}
+		assertEquals(10, roulette.getSpinHistory().getCount(17));
+		assertEquals(10 * (Roulette.EUROPEAN_TOTAL - 1), roulette.getSpinHistory().getChiSquare(), 1e-9);
+	}
+}
@@ -0,0 +1,76 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit test for TableHost
+ */
+public class TableHostTest
+{
+
+	/**
+	 * Many tables of both wheel sizes spin on the shared threads and settle routed bets
+	 * @throws Exception 
+	 */
+	@Test
+	public void testManyTables() throws Exception{
+		TableHost host = new TableHost();
+		int noOfTables = 2000;
+		CountDownLatch allSettled = new CountDownLatch(noOfTables);
+		ConcurrentHashMap<Integer, AtomicInteger> settledBets = new ConcurrentHashMap<Integer, AtomicInteger>();
+		host.setSettlementListener((tableId, settlement) -> {
+			int noOfBets = settlement.size() + settlement.getNoOfLosingBets();
+			if(noOfBets > 0 && settledBets.get(tableId).addAndGet(noOfBets) == 2){
+				allSettled.countDown();
+			}
+		});
+		
+		try {
+			for(int tableId=0; tableId<noOfTables; tableId++){
+				settledBets.put(tableId, new AtomicInteger());
+				int noOfNumbers = tableId%2 == 0 ? Roulette.EUROPEAN_TOTAL : 38;
+				host.registerTable(tableId, noOfNumbers, 50, TimeUnit.MILLISECONDS);
+			}
+			assertEquals(noOfTables, host.getNoOfTables());
+			assertEquals(38, host.getTable(1).getNoOfNumbers());
+			
+			//a bet racing the spin of its table is refused, and placed again in the next round
+			for(int tableId=0; tableId<noOfTables; tableId++){
+				while(!host.placeBet(tableId, 1, "red", 100));
+				while(!host.placeBet(tableId, 2, new int[]{17}, 100));
+			}
+			assertFalse(host.placeBet(noOfTables, 1, "red", 100));
+			
+			assertTrue(allSettled.await(10, TimeUnit.SECONDS));
+			
+			Roulette removed = host.unregisterTable(0);
+			assertNotNull(removed);
+			assertNull(host.getTable(0));
+			assertFalse(host.placeBet(0, 3, "red", 100));
+			assertEquals(noOfTables - 1, host.getNoOfTables());
+		} finally {
+			host.shutdown();
+		}
+	}
+	
+	/**
+	 * Table IDs are unique
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testDupTableIdError(){
+		TableHost host = new TableHost();
+		try {
+			host.registerTable(1, Roulette.EUROPEAN_TOTAL, 1, TimeUnit.SECONDS);
+			host.registerTable(1, Roulette.EUROPEAN_TOTAL, 1, TimeUnit.SECONDS);
+		} finally {
+			host.shutdown();
+		}
+	}
+}
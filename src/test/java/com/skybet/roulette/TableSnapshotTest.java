@@ -0,0 +1,224 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for TableSnapshot
+ */
+public class TableSnapshotTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test a restored table has the rounds, bets, liabilities and history of the snapshot
+	 * @throws Exception
+	 */
+	@Test
+	public void testRestore() throws Exception{
+		long betAmount = 500;
+		Roulette roulette = new Roulette();
+		roulette.setRandomSource(bound -> 8);
+		roulette.setTableLimit(1000000);
+		for(int betId=0; betId<1000; betId++){
+			assertTrue(roulette.placeBet(betId, betId % 2 == 0 ? "even" : "odd", betAmount));
+		}
+		assertTrue(roulette.placeBet(1000, new int[]{8,9}, betAmount));
+		assertTrue(roulette.placeBet(1001, 5, "even", betAmount));
+		roulette.spin();
+		roulette.pay(0);
+		roulette.pay(1);
+		roulette.pay(1001);
+		assertTrue(roulette.placeBet(1, "red", betAmount));
+		assertTrue(roulette.placeBet(2, new int[]{0,1,2,3}, betAmount));
+		File file = folder.newFile();
+		roulette.writeSnapshot(file);
+
+		Roulette restored = new Roulette();
+		restored.restoreSnapshot(file);
+		assertEquals(roulette.getRound(), restored.getRound());
+		assertEquals(8, restored.getCurrentNumber());
+		assertEquals(RoundPhase.OPEN, restored.getPhase(2));
+		assertEquals(RoundPhase.SPUN, restored.getPhase(1));
+		assertEquals(1000000, restored.getTableLimit());
+		for(int number=0; number<Roulette.EUROPEAN_TOTAL; number++){
+			assertEquals(roulette.getLiability(number), restored.getLiability(number));
+		}
+		int[] winningBetIds = restored.getWinningBetIds();
+		Arrays.sort(winningBetIds);
+		int[] expectedBetIds = roulette.getWinningBetIds();
+		Arrays.sort(expectedBetIds);
+		assertArrayEquals(expectedBetIds, winningBetIds);
+		assertEquals(betAmount*18, restored.pay(1000));
+		RoundSettlement settlement = restored.settleRound();
+		assertEquals(roulette.settleRound().getTotalPayout() - betAmount*18, settlement.getTotalPayout());
+		assertArrayEquals(new int[]{5}, settlement.getPlayerIds());
+		assertArrayEquals(new long[]{betAmount*2}, settlement.getPlayerPayouts());
+		assertEquals(1, restored.getSpinHistory().getCount(8));
+
+		try {
+			restored.placeBet(2, "black", betAmount);
+			fail("Bet 2 restored into the open round");
+		} catch (Exception e) {
+		}
+		restored.setRandomSource(bound -> 2);
+		restored.spin();
+		assertEquals(betAmount*9, restored.pay(2));
+	}
+
+	/**
+	 * Test snapshots written while bets of a player are paid count every bet once, either unpaid or paid
+	 * @throws Exception
+	 */
+	@Test
+	public void testSnapshotWhilePaying() throws Exception{
+		int noOfBets = 20000;
+		long betAmount = 100;
+		Roulette roulette = new Roulette();
+		for(int betId=0; betId<noOfBets; betId++){
+			assertTrue(roulette.placeBet(betId, 7, "red", betAmount));
+		}
+		roulette.spin();
+		Thread payer = new Thread(() -> {
+			try {
+				for(int betId=0; betId<noOfBets; betId++){
+					roulette.pay(betId);
+				}
+			} catch (Exception e) {
+				throw new AssertionError(e);
+			}
+		});
+		payer.start();
+		File[] files = new File[5];
+		for(int i=0; i<files.length; i++){
+			files[i] = folder.newFile();
+			roulette.writeSnapshot(files[i]);
+		}
+		payer.join();
+
+		for(File file : files){
+			Roulette restored = new Roulette();
+			restored.restoreSnapshot(file);
+			assertArrayEquals(new long[]{betAmount*noOfBets}, restored.settleRound().getPlayerStakes());
+		}
+	}
+
+	/**
+	 * Test a closed round and a settled spun round are restored as such
+	 * @throws Exception
+	 */
+	@Test
+	public void testRestoreClosedRound() throws Exception{
+		Roulette roulette = new Roulette(WheelLayout.AMERICAN, 2, true);
+		roulette.setRandomSource(bound -> 37);
+		assertTrue(roulette.placeBet(1, "basket", 100));
+		roulette.spin();
+		roulette.settleRound();
+		assertTrue(roulette.placeBet(2, "low", 100));
+		roulette.closeBetting();
+		File file = folder.newFile();
+		roulette.writeSnapshot(file);
+
+		Roulette restored = new Roulette(WheelLayout.AMERICAN);
+		restored.restoreSnapshot(file);
+		assertEquals(RoundPhase.CLOSED, restored.getPhase(2));
+		assertEquals(RoundPhase.SETTLED, restored.getPhase(1));
+		assertFalse(restored.placeBet(3, "high", 100));
+		assertEquals(200, restored.getLiability(1));
+	}
+
+	/**
+	 * Test a journaled table restored from a checkpoint or a snapshot replays only the journal after it
+	 * @throws Exception
+	 */
+	@Test
+	public void testRestoreWithJournal() throws Exception{
+		long betAmount = 100;
+		File journalFile = folder.newFile();
+		File checkpointFile = folder.newFile();
+		File snapshotFile = folder.newFile();
+		Roulette roulette = new Roulette();
+		roulette.setRandomSource(bound -> 8);
+		roulette.attachJournal(new BetJournal(journalFile, 4096));
+		for(int betId=0; betId<1000; betId++){
+			assertTrue(roulette.placeBet(betId, betId % 2 == 0 ? "even" : "odd", betAmount));
+		}
+		roulette.spin();
+		assertEquals(betAmount*2, roulette.pay(0));
+		roulette.checkpoint(checkpointFile);
+		assertEquals(4096, journalFile.length());
+		assertEquals(betAmount*2, roulette.pay(2));
+		assertTrue(roulette.placeBet(1, new int[]{8}, betAmount));
+		roulette.writeSnapshot(snapshotFile);
+		assertTrue(roulette.placeBet(2, "red", betAmount));
+
+		for(File file : new File[]{checkpointFile, snapshotFile}){
+			//a journal of its own, the standby pays into it
+			File standbyJournalFile = new File(folder.getRoot(), file.getName() + ".journal");
+			Files.copy(journalFile.toPath(), standbyJournalFile.toPath());
+			Roulette restored = new Roulette();
+			restored.restoreSnapshot(file);
+			restored.attachJournal(new BetJournal(standbyJournalFile));
+			assertEquals(roulette.getRound(), restored.getRound());
+			assertEquals(2, restored.betTable.size());
+			assertEquals(roulette.spunBetTable.size(), restored.spunBetTable.size());
+			for(int number=0; number<Roulette.EUROPEAN_TOTAL; number++){
+				assertEquals(roulette.getLiability(number), restored.getLiability(number));
+			}
+			try {
+				restored.pay(2);
+				fail("Bet paid after the checkpoint paid again");
+			} catch (Exception e) {
+			}
+			assertEquals(betAmount*2, restored.pay(4));
+		}
+
+		try {
+			new Roulette().attachJournal(new BetJournal(journalFile));
+			fail("Journal reset at a checkpoint replayed without its snapshot");
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Test snapshots of another wheel, corrupted or restored into a used table are refused
+	 * @throws Exception
+	 */
+	@Test
+	public void testRefused() throws Exception{
+		Roulette roulette = new Roulette();
+		assertTrue(roulette.placeBet(1, "red", 100));
+		File file = folder.newFile();
+		roulette.writeSnapshot(file);
+
+		try {
+			new Roulette(WheelLayout.AMERICAN).restoreSnapshot(file);
+			fail("Snapshot restored into another wheel");
+		} catch (IOException e) {
+		}
+		try {
+			roulette.restoreSnapshot(file);
+			fail("Snapshot restored into a used table");
+		} catch (IllegalStateException e) {
+		}
+		try(RandomAccessFile content = new RandomAccessFile(file, "rw")){
+			content.seek(20);
+			content.write(content.read() ^ 1);
+		}
+		try {
+			new Roulette().restoreSnapshot(file);
+			fail("Corrupted snapshot restored");
+		} catch (IOException e) {
+		}
+	}
+}
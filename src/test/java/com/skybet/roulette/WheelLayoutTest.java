@@ -0,0 +1,145 @@
+package com.skybet.roulette;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Unit test for WheelLayout
+ */
+public class WheelLayoutTest
+{
+	/**
+	 * Test the layouts picked by the number of pockets, and their labels
+	 */
+	@Test
+	public void testLayouts(){
+		assertSame(WheelLayout.EUROPEAN, WheelLayout.of(Roulette.EUROPEAN_TOTAL));
+		assertSame(WheelLayout.AMERICAN, WheelLayout.of(38));
+		assertSame(WheelLayout.TRIPLE_ZERO_LAYOUT, WheelLayout.of(39));
+		assertEquals(WheelLayout.EUROPEAN, new Roulette().getWheelLayout());
+		assertEquals("0", WheelLayout.AMERICAN.getLabel(0));
+		assertEquals("36", WheelLayout.AMERICAN.getLabel(36));
+		assertEquals("00", WheelLayout.AMERICAN.getLabel(37));
+		assertEquals("000", WheelLayout.TRIPLE_ZERO_LAYOUT.getLabel(38));
+		assertEquals(1L | 1L << 37 | 1L << 38, WheelLayout.TRIPLE_ZERO_LAYOUT.getZeroPockets());
+		assertEquals(18, Long.bitCount(WheelLayout.EUROPEAN.getRedPockets()));
+		assertEquals(18, Long.bitCount(WheelLayout.EUROPEAN.getOutsideBetCoverage("black")));
+		assertEquals(0, WheelLayout.EUROPEAN.getOutsideBetCoverage("voisins"));
+	}
+
+	/**
+	 * Test a wheel smaller than the grid does not offer the outside bets covering none of its pockets
+	 * @throws Exception
+	 */
+	@Test
+	public void testSmallWheel() throws Exception{
+		Roulette roulette = new Roulette(10);
+		assertFalse(Arrays.asList(roulette.getOutsideBetTypes()).contains("high"));
+		assertFalse(roulette.placeBet(1, "high", 100));
+		byte[] statuses = new byte[1];
+		roulette.placeBets(new int[]{2}, new String[]{"high"}, new int[1][], new long[]{100}, statuses);
+		assertEquals(Roulette.BET_INVALID, statuses[0]);
+		assertTrue(roulette.placeBet(3, "low", 100));
+	}
+
+	/**
+	 * Test a wheel variant put together with the builder, with an outside bet of its own
+	 * @throws Exception
+	 */
+	@Test
+	public void testBuilder() throws Exception{
+		long betAmount = 100;
+		WheelLayout mini = new WheelLayout.Builder("Mini", 13)
+				.redPockets(1, 3, 5, 7, 9, 12)
+				.zeroBet(0, 1)
+				.outsideBet("low", 2, 1, 2, 3, 4, 5, 6)
+				.outsideBet("high", 2, 7, 8, 9, 10, 11, 12)
+				.outsideBet("neighbours", 3, 11, 12, 0, 1)
+				.build();
+		assertEquals(Arrays.asList("low", "high", "neighbours"), mini.getOutsideBetTypes());
+		assertEquals(Roulette.OUTSIDE_BET_TYPES, WheelLayout.EUROPEAN.getOutsideBetTypes());
+
+		Roulette roulette = new Roulette(mini);
+		roulette.setRandomSource(bound -> 0);
+		assertArrayEquals(new String[]{"low", "high", "neighbours"}, roulette.getOutsideBetTypes());
+		assertTrue(roulette.placeBet(1, "neighbours", betAmount));
+		assertTrue(roulette.placeBet(2, "low", betAmount));
+		assertTrue(roulette.placeBet(3, new int[]{0,1}, betAmount));
+		assertFalse(roulette.placeBet(4, "red", betAmount));
+		assertFalse(roulette.placeBet(5, new int[]{13}, betAmount));
+		roulette.spin();
+		assertEquals(betAmount*3, roulette.pay(1));
+		assertEquals(0, roulette.pay(2));
+		assertEquals(betAmount*18, roulette.pay(3));
+
+		try {
+			new WheelLayout.Builder("Mini", 13).outsideBet("high", 2, 12, 13);
+			fail("Pocket off the wheel accepted");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new WheelLayout.Builder("Mini", 13).outsideBet("high", 2);
+			fail("Outside bet covering no pocket accepted");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new WheelLayout.Builder("Mini", 13).zeroBet(0, 1, 2, 3, 4, 5, 6);
+			fail("Zero bet over 6 pockets accepted");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new WheelLayout.Builder("Mini", 13).zeroBet(1, 2);
+			fail("Zero bet without a zero accepted");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Test no zero pocket wins an outside bet other than the basket
+	 * @throws Exception
+	 */
+	@Test
+	public void testZerosLoseOutsideBets() throws Exception{
+		long betAmount = 100;
+		for(WheelLayout wheelLayout : new WheelLayout[]{WheelLayout.EUROPEAN, WheelLayout.AMERICAN, WheelLayout.TRIPLE_ZERO_LAYOUT}){
+			long zeroPockets = wheelLayout.getZeroPockets();
+			for(; zeroPockets != 0; zeroPockets &= zeroPockets - 1){
+				int zero = Long.numberOfTrailingZeros(zeroPockets);
+				Roulette roulette = new Roulette(wheelLayout);
+				roulette.setRandomSource(bound -> zero);
+				String[] betTypes = roulette.getOutsideBetTypes();
+				for(int i=0; i<betTypes.length; i++){
+					assertTrue(roulette.placeBet(i, betTypes[i], betAmount));
+				}
+				roulette.spin();
+				RoundSettlement settlement = roulette.settleRound();
+				assertArrayEquals(wheelLayout.getLabel(zero), new int[]{betTypes.length - 1}, settlement.getBetIds());
+				assertEquals(betAmount * wheelLayout.getOutsideBetPayout("basket"), settlement.getTotalPayout());
+			}
+		}
+	}
+
+	/**
+	 * Test the inside bets on the zeros of a triple zero wheel
+	 * @throws Exception
+	 */
+	@Test
+	public void testTripleZeroInsideBets() throws Exception{
+		long betAmount = 10;
+		Roulette roulette = new Roulette(WheelLayout.TRIPLE_ZERO_LAYOUT);
+		roulette.setRandomSource(bound -> 38);
+		assertTrue(roulette.placeBet(1, new int[]{37,38}, betAmount));
+		assertTrue(roulette.placeBet(2, new int[]{0,37,38}, betAmount));
+		assertTrue(roulette.placeBet(3, new int[]{38,3}, betAmount));
+		assertTrue(roulette.placeBet(4, "basket", betAmount));
+		assertFalse(roulette.placeBet(5, new int[]{0,3}, betAmount));
+		roulette.spin();
+		assertEquals(betAmount*18, roulette.pay(1));
+		assertEquals(betAmount*12, roulette.pay(2));
+		assertEquals(betAmount*18, roulette.pay(3));
+		assertEquals(betAmount*6, roulette.pay(4));
+	}
+}